@@ -0,0 +1,40 @@
+package com.maksym.habits.config;
+
+import com.maksym.habits.service.BackupService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Times every /api request and files it under "during backup" or "idle",
+ * so the cost of the online backup shows up in GET /api/backup/status.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    private final BackupService backupService;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean backupInProgress = backupService.isRunning();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            backupService.recordRequest(backupInProgress || backupService.isRunning(), System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.maksym.habits.config;
+
+import com.maksym.habits.service.SlowQueryLog;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class SlowQueryConfig {
+
+    // Static so the post-processor is registered before the DataSource is created
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourceWrapper(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds) {
+                    SlowQueryLog log = slowQueryLog.getObject();
+                    if (log.isEnabled()) return StatementTimingProxy.wrap(ds, log);
+                }
+                return bean;
+            }
+        };
+    }
+}
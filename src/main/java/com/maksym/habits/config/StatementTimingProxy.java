@@ -0,0 +1,120 @@
+package com.maksym.habits.config;
+
+import com.maksym.habits.service.SlowQueryLog;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * JDK-proxy layer over the pooled DataSource that times every statement execution
+ * (raw JDBC and Hibernate alike) and reports it to {@link SlowQueryLog}.
+ * Only the execute call is timed; rows fetched later through the ResultSet are not.
+ */
+final class StatementTimingProxy {
+
+    // set* methods on Statement that configure the statement rather than bind a parameter
+    private static final Set<String> NOT_BINDS = Set.of(
+            "setQueryTimeout", "setMaxRows", "setLargeMaxRows", "setFetchSize", "setFetchDirection",
+            "setMaxFieldSize", "setPoolable", "setEscapeProcessing", "setCursorName");
+
+    private StatementTimingProxy() {}
+
+    static DataSource wrap(DataSource target, SlowQueryLog log) {
+        return (DataSource) Proxy.newProxyInstance(
+                StatementTimingProxy.class.getClassLoader(),
+                new Class<?>[]{DataSource.class, Closeable.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        // Keep Spring's inferred destroy method closing the pool
+                        if (target instanceof AutoCloseable c) c.close();
+                        return null;
+                    }
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Connection c && method.getName().equals("getConnection")) {
+                        return connection(c, log);
+                    }
+                    return result;
+                });
+    }
+
+    private static Connection connection(Connection target, SlowQueryLog log) {
+        return (Connection) Proxy.newProxyInstance(
+                StatementTimingProxy.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = StatementTimingProxy.invoke(target, method, args);
+                        String name = method.getName();
+                        if (result instanceof PreparedStatement ps
+                                && (name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                            return statement(ps, PreparedStatement.class, (String) args[0], target, (Connection) proxy, log);
+                        }
+                        if (result instanceof Statement st && name.equals("createStatement")) {
+                            return statement(st, Statement.class, null, target, (Connection) proxy, log);
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private static Object statement(Statement target, Class<? extends Statement> type, String preparedSql,
+                                     Connection rawConn, Connection proxyConn, SlowQueryLog log) {
+        Class<?> iface = target instanceof CallableStatement ? CallableStatement.class : type;
+        return Proxy.newProxyInstance(
+                StatementTimingProxy.class.getClassLoader(),
+                new Class<?>[]{iface},
+                new InvocationHandler() {
+                    private final BitSet bound = new BitSet();
+                    private int batch;
+                    private String batchSql;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("getConnection")) return proxyConn;
+                        if (name.startsWith("set") && !NOT_BINDS.contains(name)
+                                && args != null && args.length > 0 && args[0] instanceof Integer idx) {
+                            bound.set(idx);
+                        } else if (name.equals("addBatch")) {
+                            batch++;
+                            if (args != null && args.length > 0) batchSql = (String) args[0];
+                        } else if (name.equals("clearBatch")) {
+                            batch = 0;
+                        } else if (name.equals("clearParameters")) {
+                            bound.clear();
+                        }
+                        if (!name.startsWith("execute")) return StatementTimingProxy.invoke(target, method, args);
+
+                        String sql = preparedSql;
+                        if (sql == null) {
+                            sql = (args != null && args.length > 0 && args[0] instanceof String s) ? s : batchSql;
+                        }
+                        int batchSize = name.startsWith("executeBatch") || name.startsWith("executeLargeBatch") ? batch : 0;
+                        long start = System.nanoTime();
+                        try {
+                            return StatementTimingProxy.invoke(target, method, args);
+                        } finally {
+                            long nanos = System.nanoTime() - start;
+                            if (batchSize > 0) batch = 0;
+                            log.record(sql, nanos, bound.cardinality(), batchSize, rawConn);
+                        }
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.maksym.habits.controller;
+
+import com.maksym.habits.service.SlowQueryLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final SlowQueryLog slowQueryLog;
+
+    @GetMapping("/slow-queries")
+    public Map<String, Object> slowQueries() {
+        return slowQueryLog.snapshot();
+    }
+
+    @DeleteMapping("/slow-queries")
+    public ResponseEntity<Void> clearSlowQueries() {
+        slowQueryLog.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
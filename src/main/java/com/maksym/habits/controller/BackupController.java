@@ -0,0 +1,33 @@
+package com.maksym.habits.controller;
+
+import com.maksym.habits.service.BackupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/backup")
+@RequiredArgsConstructor
+public class BackupController {
+
+    private final BackupService backupService;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> backupNow() throws Exception {
+        try {
+            return ResponseEntity.ok(backupService.backupNow());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/status")
+    public Map<String, Object> status() throws Exception {
+        return backupService.status();
+    }
+}
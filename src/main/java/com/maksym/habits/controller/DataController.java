@@ -1,6 +1,16 @@
 package com.maksym.habits.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.maksym.habits.repository.HabitJdbcRepository;
+import com.maksym.habits.repository.RepetitionJdbcRepository;
+import com.maksym.habits.service.DashboardService;
+import com.maksym.habits.service.Days;
+import com.maksym.habits.service.DataVersion;
+import com.maksym.habits.service.HabitOrderingService;
+import com.maksym.habits.service.RepetitionArchiveService;
+import com.maksym.habits.service.ResponseEncoder;
+import com.maksym.habits.service.SingleFlight;
+import com.maksym.habits.service.TargetEvaluationService;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
@@ -19,9 +29,30 @@ import java.util.stream.Collectors;
 public class DataController {
 
     private final DataSource dataSource;
-
-    public DataController(DataSource dataSource) {
+    private final RepetitionArchiveService archive;
+    private final HabitOrderingService ordering;
+    private final DashboardService dashboard;
+    private final DataVersion dataVersion;
+    private final HabitJdbcRepository habits;
+    private final RepetitionJdbcRepository repetitions;
+    private final TargetEvaluationService targets;
+    private final ResponseEncoder encoder;
+    // Identical concurrent reads share one query and one encoded body; keys include the data version
+    private final SingleFlight<String, ResponseEncoder.Encoded> reads = new SingleFlight<>();
+
+    public DataController(DataSource dataSource, RepetitionArchiveService archive, HabitOrderingService ordering,
+                          DashboardService dashboard, DataVersion dataVersion,
+                          HabitJdbcRepository habits, RepetitionJdbcRepository repetitions,
+                          TargetEvaluationService targets, ResponseEncoder encoder) {
         this.dataSource = dataSource;
+        this.habits = habits;
+        this.repetitions = repetitions;
+        this.archive = archive;
+        this.ordering = ordering;
+        this.dashboard = dashboard;
+        this.dataVersion = dataVersion;
+        this.targets = targets;
+        this.encoder = encoder;
     }
 
     // -------------------------------------------------------------------------
@@ -34,7 +65,6 @@ public class DataController {
         Files.deleteIfExists(temp); // VACUUM INTO requires that the target does not exist
 
         try (Connection conn = dataSource.getConnection()) {
-            run(conn, "PRAGMA busy_timeout=10000");
             boolean wasAuto = conn.getAutoCommit();
             try {
                 conn.setAutoCommit(true); // VACUUM INTO must run outside a transaction
@@ -51,6 +81,14 @@ public class DataController {
             throw e;
         }
 
+        // Fold archived years back in so the export is a complete database
+        try {
+            repetitions.mergeArchivesInto(temp);
+        } catch (SQLException e) {
+            try { Files.deleteIfExists(temp); } catch (IOException ignore) {}
+            throw e;
+        }
+
         InputStream in = Files.newInputStream(temp, StandardOpenOption.DELETE_ON_CLOSE);
         InputStreamResource body = new InputStreamResource(in);
         HttpHeaders headers = new HttpHeaders();
@@ -77,7 +115,6 @@ public class DataController {
             }
 
             try (Connection conn = dataSource.getConnection()) {
-                run(conn, "PRAGMA busy_timeout=10000");
                 boolean wasAuto = conn.getAutoCommit();
                 conn.setAutoCommit(false);
 
@@ -148,6 +185,11 @@ public class DataController {
                 }
             }
 
+            // Old year files belong to the replaced dataset; re-tier the imported history
+            dataVersion.bump();
+            targets.invalidateAll();
+            archive.resetAfterImport();
+
             return ResponseEntity.ok("Import completed successfully.");
         } finally {
             try { Files.deleteIfExists(uploaded); } catch (IOException ignore) {}
@@ -336,45 +378,21 @@ public class DataController {
         ps.setString(idx, v.asText());
     }
 
-    @GetMapping(value = "/repetitions", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<java.util.List<java.util.Map<String, Object>>> listRepetitions(
+    // Identical concurrent range reads (the same normalized range, format and data version)
+    // share one query and one encoded body.
+    @GetMapping(value = "/repetitions", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseEncoder.SMILE_VALUE})
+    public ResponseEntity<byte[]> listRepetitions(
             @RequestParam("from") long fromInclusive,
-            @RequestParam("to") long toExclusive) throws Exception {
-
-        final String sql =
-                "SELECT habit, timestamp, value, notes " +
-                        "FROM Repetitions " +
-                        "WHERE timestamp >= ? AND timestamp < ? " +
-                        "ORDER BY timestamp ASC, habit ASC";
-
-        long fromMs = normalizeUnitsToMs(fromInclusive);
-        long toMs   = normalizeUnitsToMs(toExclusive);
-
-        java.util.List<java.util.Map<String, Object>> out = new java.util.ArrayList<>();
-        try (java.sql.Connection conn = dataSource.getConnection()) {
-            try (java.sql.Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
-            try (java.sql.PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setLong(1, fromMs);
-                ps.setLong(2, toMs);
-                try (java.sql.ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        long ts = rs.getLong("timestamp");
-                        // ensure ms on the way out
-                        if (ts < 100_000_000_000L) ts = ts * 1000L;
-
-                        java.util.Map<String, Object> row = new java.util.LinkedHashMap<>();
-                        row.put("habit", rs.getLong("habit"));
-                        row.put("timestamp", ts);
-                        long v = rs.getLong("value");
-                        row.put("value", rs.wasNull() ? null : v);
-                        String notes = rs.getString("notes");
-                        row.put("notes", rs.wasNull() ? null : notes);
-                        out.add(row);
-                    }
-                }
-            }
-        }
-        return ResponseEntity.ok(out);
+            @RequestParam("to") long toExclusive,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) throws Exception {
+        long fromMs = Days.toMs(fromInclusive);
+        long toMs   = Days.toMs(toExclusive);
+        MediaType type = encoder.negotiate(accept);
+        long version = dataVersion.current();
+        ResponseEncoder.Encoded body = reads.run("repetitions|" + fromMs + "|" + toMs + "|" + type + "|" + version,
+                () -> encoder.encode(repetitions.list(fromMs, toMs), type));
+        return encoded(body, acceptEncoding);
     }
 
     @PatchMapping(
@@ -401,30 +419,12 @@ public class DataController {
             return ResponseEntity.ok(out);
         }
 
-        try (Connection conn = dataSource.getConnection()) {
-            try (Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
-
-            StringBuilder sql = new StringBuilder("UPDATE Habits SET ");
-            List<Object> params = new ArrayList<>();
-
-            if (hasDesc) { sql.append("description=?"); params.add(newDesc); }
-            if (hasQuestion) { if (params.size()>0) sql.append(", "); sql.append("question=?"); params.add(newQuestion); }
-            if (hasArchived) { if (params.size()>0) sql.append(", "); sql.append("archived=?"); params.add(newArchived ? 1 : 0); }
-            sql.append(" WHERE id=?");
-            params.add(id);
-
-            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-                int i = 1;
-                for (Object p : params) {
-                    if (p instanceof String) ps.setString(i++, (String) p);
-                    else if (p instanceof Integer) ps.setInt(i++, (Integer) p);
-                    else if (p instanceof Long) ps.setLong(i++, (Long) p);
-                    else if (p instanceof Boolean) ps.setInt(i++, ((Boolean)p) ? 1 : 0);
-                    else throw new IllegalArgumentException("Unexpected param type: " + p);
-                }
-                ps.executeUpdate();
-            }
-        }
+        Map<String, Object> fields = new HashMap<>();
+        if (hasDesc) fields.put("description", newDesc);
+        if (hasQuestion) fields.put("question", newQuestion);
+        if (hasArchived) fields.put("archived", newArchived);
+        habits.update(id, fields);
+        dataVersion.bump();
 
         Map<String, Object> out = new HashMap<>();
         out.put("id", id);
@@ -454,69 +454,47 @@ public class DataController {
             return ResponseEntity.badRequest().body("Order list is empty.");
         }
 
-        try (java.sql.Connection conn = dataSource.getConnection()) {
-            try (java.sql.Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
-            boolean wasAuto = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-            try (java.sql.PreparedStatement ps = conn.prepareStatement("UPDATE Habits SET position=? WHERE id=?")) {
-                for (int i = 0; i < ids.size(); i++) {
-                    ps.setInt(1, i);
-                    ps.setLong(2, ids.get(i));
-                    ps.addBatch();
-                }
-                ps.executeBatch();
-            }
-            conn.commit();
-            try { conn.setAutoCommit(wasAuto); } catch (Exception ignore) {}
-        }
+        habits.reorder(ids, HabitOrderingService.GAP);
+        dataVersion.bump();
 
         return ResponseEntity.ok("Reordered.");
     }
 
+    // -------------------------------------------------------------------------
+    // MOVE: PUT /api/habits/{id}/position  { "after": id|null, "before": id|null }
+    // Usually a single-row UPDATE; see HabitOrderingService.
+    // -------------------------------------------------------------------------
+    @PutMapping(value = "/habits/{id}/position", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> moveHabit(@PathVariable("id") long id, @RequestBody JsonNode body) throws Exception {
+        Long after = body.hasNonNull("after") ? body.get("after").asLong() : null;
+        Long before = body.hasNonNull("before") ? body.get("before").asLong() : null;
+        try {
+            Map<String, Object> out = ordering.move(id, after, before);
+            return out == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(out);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+
     @PostMapping(value = "/repetitions", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
     public ResponseEntity<String> upsertRepetition(@RequestBody com.fasterxml.jackson.databind.JsonNode body) throws Exception {
         if (!body.hasNonNull("habitId") || !body.hasNonNull("timestamp")) {
             return ResponseEntity.badRequest().body("Missing habitId or timestamp.");
         }
         long habitId = body.get("habitId").asLong();
-        long tsMs    = normalizeUnitsToMs(body.get("timestamp").asLong());
-        long dayUtc  = toUtcMidnight(tsMs);
+        long timestamp = body.get("timestamp").asLong();
+        if (!Days.isSupported(timestamp)) {
+            return ResponseEntity.badRequest().body("Timestamp out of range.");
+        }
+        long dayUtc  = Days.dayOf(timestamp);
         com.fasterxml.jackson.databind.JsonNode v = body.get("value");
         Long value = (v == null || v.isNull()) ? null : v.asLong();
         String notes = body.hasNonNull("notes") ? body.get("notes").asText() : null;
 
-        // Requires a unique index on (habit, timestamp). If you don't have it, add:
-        // CREATE UNIQUE INDEX IF NOT EXISTS ux_repetitions_habit_day ON Repetitions(habit, timestamp);
-
-        try (java.sql.Connection conn = dataSource.getConnection()) {
-            try (java.sql.Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
-            boolean was = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-            try {
-                if (value == null) {
-                    try (java.sql.PreparedStatement del = conn.prepareStatement(
-                            "DELETE FROM Repetitions WHERE habit=? AND timestamp=?")) {
-                        del.setLong(1, habitId);
-                        del.setLong(2, dayUtc);
-                        del.executeUpdate();
-                    }
-                } else {
-                    try (java.sql.PreparedStatement ps = conn.prepareStatement(
-                            "INSERT INTO Repetitions(habit, timestamp, value, notes) " +
-                                    "VALUES(?,?,?,?) " +
-                                    "ON CONFLICT(habit, timestamp) DO UPDATE SET value=excluded.value, notes=excluded.notes")) {
-                        ps.setLong(1, habitId);
-                        ps.setLong(2, dayUtc);
-                        ps.setLong(3, value);
-                        if (notes == null) ps.setNull(4, java.sql.Types.VARCHAR); else ps.setString(4, notes);
-                        ps.executeUpdate();
-                    }
-                }
-                conn.commit();
-            } finally {
-                try { conn.setAutoCommit(was); } catch (Exception ignore) {}
-            }
-        }
+        repetitions.upsert(habitId, dayUtc, value, notes);
+        targets.onRepetitionChanged(habitId, dayUtc);
+        dataVersion.bump();
         return ResponseEntity.ok("Saved");
     }
 
@@ -524,57 +502,93 @@ public class DataController {
     public ResponseEntity<String> deleteRepetition(
             @RequestParam("habitId") long habitId,
             @RequestParam("timestamp") long timestamp) throws Exception {
-        long tsMs   = normalizeUnitsToMs(timestamp);
-        long dayUtc = toUtcMidnight(tsMs);
-        try (java.sql.Connection conn = dataSource.getConnection()) {
-            try (java.sql.Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
-            try (java.sql.PreparedStatement del = conn.prepareStatement(
-                    "DELETE FROM Repetitions WHERE habit=? AND timestamp=?")) {
-                del.setLong(1, habitId);
-                del.setLong(2, dayUtc);
-                del.executeUpdate();
-            }
-        }
+        long dayUtc = Days.dayOf(timestamp);
+        repetitions.delete(habitId, dayUtc);
+        targets.onRepetitionChanged(habitId, dayUtc);
+        dataVersion.bump();
         return ResponseEntity.ok("Deleted");
     }
 
-    private static long normalizeUnitsToMs(long ts) {
-        // if looks like seconds since epoch, convert to ms
-        return (ts < 100_000_000_000L) ? ts * 1000L : ts;
+    // -------------------------------------------------------------------------
+    // ARCHIVE: POST /api/archive
+    // Move repetitions older than the configured horizon into per-year files now.
+    // 409 unless habits.archive.enabled is set.
+    // -------------------------------------------------------------------------
+    @PostMapping(value = "/archive", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> archiveRepetitions() throws Exception {
+        if (!archive.isEnabled()) {
+            return ResponseEntity.status(409).body(Map.of("error", "Archiving is disabled."));
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("moved", archive.archiveNow());
+        out.put("years", archive.archivedYears());
+        return ResponseEntity.ok(out);
     }
-    private static long toUtcMidnight(long epochMs) {
-        final long MS_PER_DAY = 86_400_000L;
-        return epochMs - Math.floorMod(epochMs, MS_PER_DAY);
+
+    // -------------------------------------------------------------------------
+    // DASHBOARD: GET /api/dashboard?days=N
+    // Non-archived habits in position order, each with one value per day
+    // (oldest first, null = no entry). Cached until the next write.
+    // -------------------------------------------------------------------------
+    @GetMapping(value = "/dashboard", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseEncoder.SMILE_VALUE})
+    public ResponseEntity<?> dashboard(
+            @RequestParam(name = "days", required = false, defaultValue = "30") int days) throws Exception {
+        try {
+            return ResponseEntity.ok(dashboard.dashboard(days));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
     }
 
-    @GetMapping(value = "/habits", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Map<String, Object>>> listHabits(
-            @RequestParam(name = "includeArchived", required = false, defaultValue = "false") boolean includeArchived
-    ) throws Exception {
-        List<Map<String, Object>> out = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection()) {
-            try (Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
-            String sql = "SELECT id, name, description, question, color, type, position, archived FROM Habits "
-                    + (includeArchived ? "" : "WHERE COALESCE(archived, 0) = 0 ")
-                    + "ORDER BY position ASC, id ASC";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        Map<String, Object> row = new LinkedHashMap<>();
-                        row.put("id", rs.getLong("id"));
-                        row.put("name", rs.getString("name"));
-                        row.put("description", rs.getString("description"));
-                        row.put("question", rs.getString("question"));
-                        row.put("color", rs.getInt("color"));
-                        row.put("type", rs.getInt("type"));
-                        row.put("position", rs.getInt("position"));
-                        row.put("archived", rs.getInt("archived") == 1);
-                        out.add(row);
-                    }
-                }
-            }
+    // -------------------------------------------------------------------------
+    // TARGETS: GET /api/habits/{id}/targets?from=&to=
+    // Measurable habits only: per day in [from, to), the trailing freq_den-day
+    // sum and whether it meets the target. See TargetEvaluationService.
+    // -------------------------------------------------------------------------
+    @GetMapping(value = "/habits/{id}/targets", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseEncoder.SMILE_VALUE})
+    public ResponseEntity<?> habitTargets(
+            @PathVariable("id") long id,
+            @RequestParam("from") long fromInclusive,
+            @RequestParam("to") long toExclusive) throws Exception {
+        if (!Days.isSupported(fromInclusive) || !Days.isSupported(toExclusive)) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Timestamp out of range.");
         }
-        return ResponseEntity.ok(out);
+        long fromDay = Days.dayOf(fromInclusive);
+        // Round the exclusive end up so a partial last day is still evaluated
+        long toDay   = Days.toUtcMidnight(Days.toMs(toExclusive) + Days.MS_PER_DAY - 1);
+        try {
+            Map<String, Object> out = targets.evaluate(id, fromDay, toDay);
+            return out == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(out);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+
+    private static ResponseEntity<byte[]> encoded(ResponseEncoder.Encoded e, String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(e.type());
+        headers.setVary(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+        if (e.gzip() != null && ResponseEncoder.acceptsGzip(acceptEncoding)) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(e.gzip(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(e.body(), headers, HttpStatus.OK);
+    }
+
+
+    // Served pre-encoded: serialized and gzipped once per data version, see ResponseEncoder.
+    // Concurrent misses for the same version coalesce into one query.
+    @GetMapping(value = "/habits", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ResponseEncoder.SMILE_VALUE})
+    public ResponseEntity<byte[]> listHabits(
+            @RequestParam(name = "includeArchived", required = false, defaultValue = "false") boolean includeArchived,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) throws Exception {
+        MediaType type = encoder.negotiate(accept);
+        long version = dataVersion.current();
+        ResponseEncoder.Encoded body = reads.run("habits|" + includeArchived + "|" + type + "|" + version,
+                () -> encoder.cached("habits:" + includeArchived, type, version, () -> habits.list(includeArchived)));
+        return encoded(body, acceptEncoding);
     }
 
 
@@ -1,5 +1,8 @@
 package com.maksym.habits.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.maksym.habits.model.Habit;
 import com.maksym.habits.service.HabitService;
 import lombok.RequiredArgsConstructor;
@@ -12,7 +15,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/habits")
@@ -20,15 +25,27 @@ import java.util.List;
 public class HabitController {
 
     private final HabitService habitService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<Habit> createHabit(@RequestBody Habit habit) {
         return ResponseEntity.ok(habitService.create(habit));
     }
 
+    // Writes only the fields present in the body; an explicit null clears a nullable field
     @PutMapping("/{id}")
-    public ResponseEntity<Habit> updateHabit(@PathVariable Integer id, @RequestBody Habit habit) {
-        return ResponseEntity.ok(habitService.update(id, habit));
+    public ResponseEntity<Habit> updateHabit(@PathVariable Integer id, @RequestBody JsonNode body) {
+        Habit habit;
+        try {
+            habit = objectMapper.treeToValue(body, Habit.class);
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Set<String> supplied = new HashSet<>();
+        body.fieldNames().forEachRemaining(supplied::add);
+        return habitService.update(id, habit, supplied)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/{id}")
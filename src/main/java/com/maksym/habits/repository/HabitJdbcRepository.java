@@ -0,0 +1,419 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.model.Habit;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Plain-JDBC access to {@code Habits}, the only repository for the table; the {@link Habit}
+ * entity is kept for schema generation. Fixed statements go through {@link StatementCache};
+ * inserts and updates write only the columns they are given.
+ */
+@Repository
+public class HabitJdbcRepository {
+
+    // Java-side name -> column, for every column a caller may update
+    public static final Map<String, String> UPDATABLE_COLUMNS = Map.ofEntries(
+            Map.entry("archived", "archived"),
+            Map.entry("color", "color"),
+            Map.entry("description", "description"),
+            Map.entry("freqDen", "freq_den"),
+            Map.entry("freqNum", "freq_num"),
+            Map.entry("highlight", "highlight"),
+            Map.entry("name", "name"),
+            Map.entry("position", "position"),
+            Map.entry("reminderHour", "reminder_hour"),
+            Map.entry("reminderMin", "reminder_min"),
+            Map.entry("reminderDays", "reminder_days"),
+            Map.entry("type", "type"),
+            Map.entry("targetType", "target_type"),
+            Map.entry("targetValue", "target_value"),
+            Map.entry("unit", "unit"),
+            Map.entry("question", "question"),
+            Map.entry("uuid", "uuid"));
+
+    private static final String LIST_ACTIVE =
+            "SELECT id, name, description, question, color, type, position, archived FROM Habits "
+                    + "WHERE COALESCE(archived, 0) = 0 ORDER BY position ASC, id ASC";
+    private static final String LIST_ALL =
+            "SELECT id, name, description, question, color, type, position, archived FROM Habits "
+                    + "ORDER BY position ASC, id ASC";
+    private static final String SELECT_HABIT =
+            "SELECT id, archived, color, description, freq_den, freq_num, highlight, name, position, "
+                    + "reminder_hour, reminder_min, reminder_days, type, target_type, target_value, unit, "
+                    + "question, uuid FROM Habits";
+    private static final String SET_POSITION = "UPDATE Habits SET position=? WHERE id=?";
+
+    private final DataSource dataSource;
+    private final StatementCache statements;
+
+    public HabitJdbcRepository(DataSource dataSource, StatementCache statements) {
+        this.dataSource = dataSource;
+        this.statements = statements;
+    }
+
+    public List<Map<String, Object>> list(boolean includeArchived) throws SQLException {
+        List<Map<String, Object>> out = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, includeArchived ? LIST_ALL : LIST_ACTIVE);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", rs.getLong("id"));
+                row.put("name", rs.getString("name"));
+                row.put("description", rs.getString("description"));
+                row.put("question", rs.getString("question"));
+                row.put("color", rs.getInt("color"));
+                row.put("type", rs.getInt("type"));
+                row.put("position", rs.getInt("position"));
+                row.put("archived", rs.getInt("archived") == 1);
+                out.add(row);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * {@code UPDATE Habits SET <only the given fields> WHERE id=?}. Keys are the Java-side names
+     * from {@link #UPDATABLE_COLUMNS}; a null value writes NULL. Columns are emitted in sorted
+     * order, so each distinct field set maps to one cached statement.
+     *
+     * @return number of rows updated (0 if the habit does not exist)
+     */
+    public int update(long id, Map<String, Object> fields) throws SQLException {
+        if (fields.isEmpty()) return exists(id) ? 1 : 0;
+        SortedMap<String, Object> sorted = new TreeMap<>(fields);
+
+        StringBuilder sql = new StringBuilder("UPDATE Habits SET ");
+        boolean first = true;
+        for (String field : sorted.keySet()) {
+            String column = UPDATABLE_COLUMNS.get(field);
+            if (column == null) throw new IllegalArgumentException("Unknown habit field: " + field);
+            if (!first) sql.append(", ");
+            sql.append(column).append("=?");
+            first = false;
+        }
+        sql.append(" WHERE id=?");
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, sql.toString())) {
+            int i = 1;
+            for (Object v : sorted.values()) bind(ps, i++, v);
+            ps.setLong(i, id);
+            return ps.executeUpdate();
+        }
+    }
+
+    /** Every updatable field of {@code habit}, keyed as in {@link #UPDATABLE_COLUMNS}. */
+    public static Map<String, Object> fieldsOf(Habit habit) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("archived", habit.getArchived());
+        fields.put("color", habit.getColor());
+        fields.put("description", habit.getDescription());
+        fields.put("freqDen", habit.getFreqDen());
+        fields.put("freqNum", habit.getFreqNum());
+        fields.put("highlight", habit.getHighlight());
+        fields.put("name", habit.getName());
+        fields.put("position", habit.getPosition());
+        fields.put("reminderHour", habit.getReminderHour());
+        fields.put("reminderMin", habit.getReminderMin());
+        fields.put("reminderDays", habit.getReminderDays());
+        fields.put("type", habit.getType());
+        fields.put("targetType", habit.getTargetType());
+        fields.put("targetValue", habit.getTargetValue());
+        fields.put("unit", habit.getUnit());
+        fields.put("question", habit.getQuestion());
+        fields.put("uuid", habit.getUuid());
+        return fields;
+    }
+
+    /** Insert {@code habit} with every field it holds; returns it with the new id set. */
+    public Habit insert(Habit habit) throws SQLException {
+        SortedMap<String, Object> sorted = new TreeMap<>(fieldsOf(habit));
+        StringJoiner columns = new StringJoiner(", ", "INSERT INTO Habits(", ")");
+        StringJoiner params = new StringJoiner(", ", " VALUES(", ")");
+        for (String field : sorted.keySet()) {
+            columns.add(UPDATABLE_COLUMNS.get(field));
+            params.add("?");
+        }
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, columns + params.toString())) {
+            int i = 1;
+            for (Object v : sorted.values()) bind(ps, i++, v);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                habit.setId(keys.getInt(1));
+            }
+        }
+        return habit;
+    }
+
+    public Optional<Habit> findById(long id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, SELECT_HABIT + " WHERE id=?")) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(habit(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    public List<Habit> findAll() throws SQLException {
+        List<Habit> out = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, SELECT_HABIT + " ORDER BY id ASC");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) out.add(habit(rs));
+        }
+        return out;
+    }
+
+    private static Habit habit(ResultSet rs) throws SQLException {
+        Habit h = new Habit();
+        h.setId(rs.getInt("id"));
+        h.setArchived(nullableBoolean(rs, "archived"));
+        h.setColor(nullableInt(rs, "color"));
+        h.setDescription(rs.getString("description"));
+        h.setFreqDen(nullableInt(rs, "freq_den"));
+        h.setFreqNum(nullableInt(rs, "freq_num"));
+        h.setHighlight(nullableBoolean(rs, "highlight"));
+        h.setName(rs.getString("name"));
+        h.setPosition(nullableInt(rs, "position"));
+        h.setReminderHour(nullableInt(rs, "reminder_hour"));
+        h.setReminderMin(nullableInt(rs, "reminder_min"));
+        h.setReminderDays(rs.getInt("reminder_days"));
+        h.setType(rs.getInt("type"));
+        h.setTargetType(rs.getInt("target_type"));
+        h.setTargetValue(rs.getDouble("target_value"));
+        h.setUnit(rs.getString("unit"));
+        h.setQuestion(rs.getString("question"));
+        h.setUuid(rs.getString("uuid"));
+        return h;
+    }
+
+    private static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+        int v = rs.getInt(column);
+        return rs.wasNull() ? null : v;
+    }
+
+    private static Boolean nullableBoolean(ResultSet rs, String column) throws SQLException {
+        Integer v = nullableInt(rs, column);
+        return v == null ? null : v == 1;
+    }
+
+    /** Write {@code position = i * gap} for every id in list order, in one transaction. */
+    public void reorder(List<Long> ids, int gap) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean wasAuto = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = statements.prepare(conn, SET_POSITION)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setInt(1, i * gap);
+                    ps.setLong(2, ids.get(i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                try { conn.setAutoCommit(wasAuto); } catch (SQLException ignore) {}
+            }
+        }
+    }
+
+    /** Type and target settings of one habit, or null if it doesn't exist. */
+    public Map<String, Object> findTarget(long id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn,
+                     "SELECT type, freq_den, target_type, target_value, unit FROM Habits WHERE id=?")) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Map<String, Object> h = new LinkedHashMap<>();
+                h.put("habitId", id);
+                h.put("type", rs.getInt("type"));
+                h.put("freqDen", rs.getInt("freq_den"));
+                h.put("targetType", rs.getInt("target_type"));
+                h.put("targetValue", rs.getDouble("target_value"));
+                h.put("unit", rs.getString("unit"));
+                return h;
+            }
+        }
+    }
+
+    public boolean exists(long id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, "SELECT 1 FROM Habits WHERE id=?")) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Ordering keys. These take the caller's connection so a read-then-write
+    // sequence runs in one transaction (see inTransaction).
+    // -------------------------------------------------------------------------
+
+    /** Work run on one pooled connection inside a transaction. */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Run {@code work} in one transaction; rolled back if it throws. The transaction starts with
+     * {@code BEGIN IMMEDIATE}, taking the write lock before the first read: a deferred transaction
+     * that reads and then writes fails with SQLITE_BUSY straight away (busy_timeout doesn't apply)
+     * when another connection wrote in between. Issued as statements rather than through
+     * setAutoCommit(false), which would begin the next transaction right after each commit.
+     */
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            execute(conn, "BEGIN IMMEDIATE");
+            try {
+                T result = work.run(conn);
+                execute(conn, "COMMIT");
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    execute(conn, "ROLLBACK");
+                } catch (SQLException rollback) {
+                    e.addSuppressed(rollback);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    public boolean exists(Connection conn, long id) throws SQLException {
+        try (PreparedStatement ps = statements.prepare(conn, "SELECT 1 FROM Habits WHERE id=?")) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Position of one habit; null if it doesn't exist or has no position yet. */
+    public Integer position(Connection conn, long id) throws SQLException {
+        try (PreparedStatement ps = statements.prepare(conn, "SELECT position FROM Habits WHERE id=?")) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                int p = rs.getInt(1);
+                return rs.wasNull() ? null : p;
+            }
+        }
+    }
+
+    public boolean hasUnpositioned(Connection conn) throws SQLException {
+        try (PreparedStatement ps = statements.prepare(conn, "SELECT 1 FROM Habits WHERE position IS NULL LIMIT 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    /** Every habit id in display order, optionally leaving one out. */
+    public List<Long> orderedIds(Connection conn, Long excludeId) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement ps = statements.prepare(conn, "SELECT id FROM Habits ORDER BY position ASC, id ASC");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long v = rs.getLong(1);
+                if (excludeId == null || v != excludeId) ids.add(v);
+            }
+        }
+        return ids;
+    }
+
+    /** Closest position strictly above/below {@code anchor}, ignoring {@code excludeId}. */
+    public Integer neighbour(Connection conn, long excludeId, int anchor, boolean above) throws SQLException {
+        String sql = above
+                ? "SELECT MIN(position) FROM Habits WHERE position > ? AND id <> ?"
+                : "SELECT MAX(position) FROM Habits WHERE position < ? AND id <> ?";
+        try (PreparedStatement ps = statements.prepare(conn, sql)) {
+            ps.setInt(1, anchor);
+            ps.setLong(2, excludeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                int p = rs.getInt(1);
+                return rs.wasNull() ? null : p;
+            }
+        }
+    }
+
+    /** Whether a habit other than {@code id} and {@code excludeId} sits at {@code position}. */
+    public boolean sharesPosition(Connection conn, int position, long id, long excludeId) throws SQLException {
+        try (PreparedStatement ps = statements.prepare(conn,
+                "SELECT 1 FROM Habits WHERE position=? AND id<>? AND id<>? LIMIT 1")) {
+            ps.setInt(1, position);
+            ps.setLong(2, id);
+            ps.setLong(3, excludeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public void setPosition(Connection conn, long id, int position) throws SQLException {
+        try (PreparedStatement ps = statements.prepare(conn, SET_POSITION)) {
+            ps.setInt(1, position);
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Write {@code position = i * gap} for every id in list order, skipping rows that already
+     * hold their key. Returns the number of rows written.
+     */
+    public int writePositions(Connection conn, List<Long> ids, int gap) throws SQLException {
+        Map<Long, Integer> current = new HashMap<>();
+        try (PreparedStatement ps = statements.prepare(conn, "SELECT id, position FROM Habits");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                int p = rs.getInt(2);
+                current.put(id, rs.wasNull() ? null : p);
+            }
+        }
+        int changed = 0;
+        try (PreparedStatement ps = statements.prepare(conn, SET_POSITION)) {
+            for (int i = 0; i < ids.size(); i++) {
+                Integer was = current.get(ids.get(i));
+                if (was != null && was == i * gap) continue;
+                ps.setInt(1, i * gap);
+                ps.setLong(2, ids.get(i));
+                ps.addBatch();
+                changed++;
+            }
+            if (changed > 0) ps.executeBatch();
+        }
+        return changed;
+    }
+
+    private static void bind(PreparedStatement ps, int idx, Object v) throws SQLException {
+        if (v == null) ps.setNull(idx, Types.NULL);
+        else if (v instanceof String s) ps.setString(idx, s);
+        else if (v instanceof Integer n) ps.setInt(idx, n);
+        else if (v instanceof Long n) ps.setLong(idx, n);
+        else if (v instanceof Double d) ps.setDouble(idx, d);
+        else if (v instanceof Boolean b) ps.setInt(idx, b ? 1 : 0);
+        else throw new IllegalArgumentException("Unexpected param type: " + v);
+    }
+}
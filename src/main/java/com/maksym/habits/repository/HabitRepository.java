@@ -1,10 +0,0 @@
-package com.maksym.habits.repository;
-
-
-import com.maksym.habits.model.Habit;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-@Repository
-public interface HabitRepository extends JpaRepository<Habit, Integer> {
-}
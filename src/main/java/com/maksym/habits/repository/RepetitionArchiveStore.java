@@ -0,0 +1,207 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.service.Days;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteLimits;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The per-year archive files ({@code <dir>/repetitions_YYYY.db}) behind {@code Repetitions}:
+ * where they live, which years exist, and attaching them to a connection for reads.
+ * Policy (what to archive, when) lives in {@code RepetitionArchiveService}.
+ *
+ * A read lists the year files and then queries them, so a move committing in between could
+ * hide rows that just left the live table. Reads therefore hold the shared side of a lock from
+ * listing the years until their scope closes, and anything that moves rows between the tiers
+ * or removes year files holds the {@link #exclusive()} side.
+ *
+ * The year list is scanned once and cached; whoever adds or removes year files calls
+ * {@link #refresh()} before releasing the exclusive lock. While archiving is disabled and no
+ * year files exist, nothing can move and reads skip the lock entirely.
+ */
+@Component
+public class RepetitionArchiveStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RepetitionArchiveStore.class);
+
+    private static final Pattern ARCHIVE_FILE = Pattern.compile("repetitions_(\\d{4})\\.db");
+    private static final String COLUMNS = "habit, timestamp, value, notes";
+
+    private final Path archiveDir;
+    private final boolean enabled;
+    // Fair, so a waiting move isn't starved by a steady stream of reads
+    private final ReentrantReadWriteLock tiers = new ReentrantReadWriteLock(true);
+    // Sorted, immutable; replaced by refresh()
+    private volatile List<Integer> years;
+
+    public RepetitionArchiveStore(@Value("${habits.archive.dir:archive}") String archiveDir,
+                                  @Value("${habits.archive.enabled:false}") boolean enabled) {
+        this.archiveDir = Paths.get(archiveDir).toAbsolutePath();
+        this.enabled = enabled;
+        this.years = scan();
+    }
+
+    public Path dir() {
+        return archiveDir;
+    }
+
+    public Path fileFor(int year) {
+        return archiveDir.resolve("repetitions_" + year + ".db");
+    }
+
+    public List<Integer> archivedYears() {
+        return years;
+    }
+
+    /** Re-read the year files on disk; call after creating or deleting one. */
+    public void refresh() {
+        years = scan();
+    }
+
+    /** Whether reads and deletes have to consider the archive tier at all. */
+    public boolean isActive() {
+        return enabled || !years.isEmpty();
+    }
+
+    private List<Integer> scan() {
+        List<Integer> years = new ArrayList<>();
+        if (!Files.isDirectory(archiveDir)) return years;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(archiveDir, "repetitions_*.db")) {
+            for (Path p : ds) {
+                Matcher m = ARCHIVE_FILE.matcher(p.getFileName().toString());
+                if (m.matches()) years.add(Integer.parseInt(m.group(1)));
+            }
+        } catch (IOException e) {
+            log.warn("Cannot list archive directory {}", archiveDir, e);
+        }
+        Collections.sort(years);
+        return List.copyOf(years);
+    }
+
+    /**
+     * Held while rows move between the live table and the year files, or while files are removed.
+     * Take a pooled connection before the lock: readers hold theirs while they wait for it.
+     */
+    public Lock exclusive() {
+        return tiers.writeLock();
+    }
+
+    /** A standalone connection to a database file outside the pool (archive year, export snapshot). */
+    public static Connection openFile(Path file) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(10_000);
+        return DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath(), config.toProperties());
+    }
+
+    // -------------------------------------------------------------------------
+    // Read side: attach every year file overlapping [fromMs, toMs) to conn.
+    // The connection must not be inside a transaction.
+    // -------------------------------------------------------------------------
+    public Scope open(Connection conn, long fromMs, long toMs) throws SQLException {
+        // Nothing archived and nothing that could archive: no years, no lock
+        if (!isActive()) return new Scope(conn, List.of(), false);
+        // Released by Scope.close(), after the caller's query has run
+        tiers.readLock().lock();
+        List<Integer> overlapping = new ArrayList<>();
+        if (fromMs < toMs) {
+            for (int y : years) {
+                if (Days.yearStart(y) < toMs && Days.yearStart(y + 1) > fromMs) overlapping.add(y);
+            }
+        }
+        return new Scope(conn, overlapping, true);
+    }
+
+    /**
+     * Attached archive years for one connection. {@link #source()} yields a FROM-clause
+     * source aliased {@code r} exposing {@code habit, timestamp, value, notes}; rows in
+     * the live table win over archived rows for the same (habit, day). No rows move between the
+     * tiers while a scope is open.
+     */
+    public final class Scope implements AutoCloseable {
+        private final Connection conn;
+        private final List<String> aliases = new ArrayList<>();
+        private boolean locked;
+
+        private Scope(Connection conn, List<Integer> years, boolean locked) throws SQLException {
+            this.conn = conn;
+            this.locked = locked;
+            if (years.isEmpty()) return;
+            try {
+                if (years.size() >= 10) {
+                    // Default runtime limit is 10; the bundled library is compiled with 125
+                    conn.unwrap(SQLiteConnection.class).setLimit(SQLiteLimits.SQLITE_LIMIT_ATTACHED, 125);
+                }
+                for (int year : years) {
+                    String alias = newAlias();
+                    attach(conn, fileFor(year), alias);
+                    aliases.add(alias);
+                }
+            } catch (SQLException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public boolean hasArchives() {
+            return !aliases.isEmpty();
+        }
+
+        public String source() {
+            if (aliases.isEmpty()) return "Repetitions r";
+            StringBuilder sb = new StringBuilder("(SELECT " + COLUMNS + " FROM main.Repetitions");
+            for (String a : aliases) {
+                sb.append(" UNION ALL SELECT a.habit, a.timestamp, a.value, a.notes FROM ")
+                        .append(a).append(".Repetitions a WHERE NOT EXISTS (SELECT 1 FROM main.Repetitions m")
+                        .append(" WHERE m.habit = a.habit AND m.timestamp = a.timestamp)");
+            }
+            return sb.append(") r").toString();
+        }
+
+        @Override
+        public void close() {
+            for (String a : aliases) {
+                try { detach(conn, a); } catch (SQLException ignore) {}
+            }
+            aliases.clear();
+            if (locked) {
+                locked = false;
+                tiers.readLock().unlock();
+            }
+        }
+    }
+
+    // ============================== Helpers ==============================
+
+    static String newAlias() {
+        return "arch_" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    static void attach(Connection conn, Path file, String alias) throws SQLException {
+        String path = file.toAbsolutePath().toString().replace("'", "''");
+        try (Statement st = conn.createStatement()) {
+            st.execute("ATTACH DATABASE '" + path + "' AS " + alias);
+        }
+    }
+
+    static void detach(Connection conn, String alias) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DETACH DATABASE " + alias);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.service.Days;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+import static com.maksym.habits.service.Days.MS_PER_DAY;
+
+/**
+ * Plain-JDBC access to {@code Repetitions}. Timestamps are UTC-midnight epoch millis.
+ * Range reads transparently include archived years (see {@link RepetitionArchiveStore}); the
+ * statements that move rows into and out of those years live here too.
+ */
+@Repository
+public class RepetitionJdbcRepository {
+
+    // Requires a unique index on (habit, timestamp). If you don't have it, add:
+    // CREATE UNIQUE INDEX IF NOT EXISTS ux_repetitions_habit_day ON Repetitions(habit, timestamp);
+    private static final String UPSERT =
+            "INSERT INTO Repetitions(habit, timestamp, value, notes) VALUES(?,?,?,?) " +
+                    "ON CONFLICT(habit, timestamp) DO UPDATE SET value=excluded.value, notes=excluded.notes";
+    private static final String DELETE = "DELETE FROM Repetitions WHERE habit=? AND timestamp=?";
+
+    private final DataSource dataSource;
+    private final StatementCache statements;
+    private final RepetitionArchiveStore archive;
+
+    public RepetitionJdbcRepository(DataSource dataSource, StatementCache statements,
+                                    RepetitionArchiveStore archive) {
+        this.dataSource = dataSource;
+        this.statements = statements;
+        this.archive = archive;
+    }
+
+    public List<Map<String, Object>> list(long fromMs, long toMs) throws SQLException {
+        List<Map<String, Object>> out = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             RepetitionArchiveStore.Scope scope = archive.open(conn, fromMs, toMs)) {
+            String sql = "SELECT habit, timestamp, value, notes " +
+                    "FROM " + scope.source() + " " +
+                    "WHERE timestamp >= ? AND timestamp < ? " +
+                    "ORDER BY timestamp ASC, habit ASC";
+            // Archive aliases are unique per request, so only the hot-only shape is worth caching
+            try (PreparedStatement ps = scope.hasArchives() ? conn.prepareStatement(sql) : statements.prepare(conn, sql)) {
+                ps.setLong(1, fromMs);
+                ps.setLong(2, toMs);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // ensure ms on the way out
+                        long ts = Days.toMs(rs.getLong("timestamp"));
+
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        row.put("habit", rs.getLong("habit"));
+                        row.put("timestamp", ts);
+                        long v = rs.getLong("value");
+                        row.put("value", rs.wasNull() ? null : v);
+                        String notes = rs.getString("notes");
+                        row.put("notes", rs.wasNull() ? null : notes);
+                        out.add(row);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Every (day, value) recorded for one habit on the days in [fromDay, toDay), archived years
+     * included, in day order. Rows stored in seconds count toward their day too.
+     */
+    public SortedMap<Long, Long> dailyValues(long habitId, long fromDay, long toDay) throws SQLException {
+        SortedMap<Long, Long> out = new TreeMap<>();
+        try (Connection conn = dataSource.getConnection();
+             RepetitionArchiveStore.Scope scope = archive.open(conn, fromDay, toDay)) {
+            String sql = "SELECT timestamp, value FROM " + scope.source() + " WHERE habit = ? "
+                    + "AND ((timestamp >= ? AND timestamp < ?) OR (timestamp >= ? AND timestamp < ?))";
+            try (PreparedStatement ps = scope.hasArchives() ? conn.prepareStatement(sql) : statements.prepare(conn, sql)) {
+                ps.setLong(1, habitId);
+                ps.setLong(2, fromDay);
+                ps.setLong(3, toDay);
+                ps.setLong(4, fromDay / 1000L);
+                ps.setLong(5, toDay / 1000L);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long day = Days.dayOf(rs.getLong(1));
+                        if (day >= fromDay && day < toDay) out.merge(day, rs.getLong(2), Long::sum);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The committed value for one (habit, day), archived years included, or 0 if there is none.
+     * Matches {@link #dailyValues}: rows stored in seconds count toward their day too.
+     */
+    public long valueOn(long habitId, long dayUtc) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             RepetitionArchiveStore.Scope scope = archive.open(conn, dayUtc, dayUtc + MS_PER_DAY)) {
+            String sql = "SELECT COALESCE(SUM(value), 0) FROM " + scope.source() + " WHERE habit = ? "
+                    + "AND ((timestamp >= ? AND timestamp < ?) OR (timestamp >= ? AND timestamp < ?))";
+            try (PreparedStatement ps = scope.hasArchives() ? conn.prepareStatement(sql) : statements.prepare(conn, sql)) {
+                ps.setLong(1, habitId);
+                ps.setLong(2, dayUtc);
+                ps.setLong(3, dayUtc + MS_PER_DAY);
+                ps.setLong(4, dayUtc / 1000L);
+                ps.setLong(5, (dayUtc + MS_PER_DAY) / 1000L);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+        }
+    }
+
+    /** Insert or overwrite the value for one (habit, day); a null value deletes it instead. */
+    public void upsert(long habitId, long dayUtc, Long value, String notes) throws SQLException {
+        if (value == null) {
+            delete(habitId, dayUtc);
+            return;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn, UPSERT)) {
+            ps.setLong(1, habitId);
+            ps.setLong(2, dayUtc);
+            ps.setLong(3, value);
+            if (notes == null) ps.setNull(4, Types.VARCHAR); else ps.setString(4, notes);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete one (habit, day) from the live table and from its archive year. Both happen under
+     * the exclusive tier lock, so no move and no read sees the day half deleted.
+     */
+    public void delete(long habitId, long dayUtc) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            if (!archive.isActive()) {
+                deleteLive(conn, habitId, dayUtc);
+                return;
+            }
+            Lock exclusive = archive.exclusive();
+            exclusive.lock();
+            try {
+                deleteLive(conn, habitId, dayUtc);
+                deleteArchived(habitId, dayUtc);
+            } finally {
+                exclusive.unlock();
+            }
+        }
+    }
+
+    private void deleteLive(Connection conn, long habitId, long dayUtc) throws SQLException {
+        try (PreparedStatement del = statements.prepare(conn, DELETE)) {
+            del.setLong(1, habitId);
+            del.setLong(2, dayUtc);
+            del.executeUpdate();
+        }
+    }
+
+    /**
+     * Non-archived habits in position order, each with its value per day for the {@code days}
+     * days starting at {@code fromDay} (oldest first, null = no entry), from one LEFT JOIN.
+     */
+    public List<Map<String, Object>> activeHabitsWithValues(long fromDay, int days) throws SQLException {
+        long to = fromDay + days * MS_PER_DAY;
+        List<Map<String, Object>> habits = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             RepetitionArchiveStore.Scope scope = archive.open(conn, fromDay, to)) {
+            String sql = "SELECT h.id, h.name, h.question, h.color, h.type, h.position, " +
+                    "h.freq_num, h.freq_den, h.target_type, h.target_value, h.unit, " +
+                    "r.timestamp, r.value " +
+                    "FROM Habits h LEFT JOIN " + scope.source() + " " +
+                    "ON r.habit = h.id AND r.timestamp >= ? AND r.timestamp < ? " +
+                    "WHERE COALESCE(h.archived, 0) = 0 " +
+                    "ORDER BY h.position ASC, h.id ASC";
+            try (PreparedStatement ps = scope.hasArchives() ? conn.prepareStatement(sql) : statements.prepare(conn, sql)) {
+                ps.setLong(1, fromDay);
+                ps.setLong(2, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    long currentId = Long.MIN_VALUE;
+                    Long[] values = null;
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        if (id != currentId) {
+                            currentId = id;
+                            values = new Long[days];
+                            Map<String, Object> h = new LinkedHashMap<>();
+                            h.put("id", id);
+                            h.put("name", rs.getString("name"));
+                            h.put("question", rs.getString("question"));
+                            h.put("color", rs.getInt("color"));
+                            h.put("type", rs.getInt("type"));
+                            h.put("position", rs.getInt("position"));
+                            h.put("freqNum", rs.getInt("freq_num"));
+                            h.put("freqDen", rs.getInt("freq_den"));
+                            h.put("targetType", rs.getInt("target_type"));
+                            h.put("targetValue", rs.getDouble("target_value"));
+                            h.put("unit", rs.getString("unit"));
+                            h.put("values", values);
+                            habits.add(h);
+                        }
+                        long ts = rs.getLong("timestamp");
+                        if (rs.wasNull()) continue; // habit with no checkmarks in the window
+                        int idx = (int) ((Days.dayOf(ts) - fromDay) / MS_PER_DAY);
+                        if (idx >= 0 && idx < days) values[idx] = rs.getLong("value");
+                    }
+                }
+            }
+        }
+        return habits;
+    }
+
+    // -------------------------------------------------------------------------
+    // Archive tier: moving rows between the live table and the year files.
+    // -------------------------------------------------------------------------
+
+    // Rows stored in seconds never leave the live table: by raw value they'd all land in 1970,
+    // which no read attaches. Archiving only ever looks at millisecond timestamps.
+
+    /** Oldest millisecond timestamp in the live table before {@code cutoff}, or null if there is none. */
+    public Long oldestBefore(long cutoff) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = statements.prepare(conn,
+                     "SELECT MIN(timestamp) FROM Repetitions WHERE timestamp >= ? AND timestamp < ?")) {
+            ps.setLong(1, Days.SECONDS_BELOW);
+            ps.setLong(2, cutoff);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                long v = rs.getLong(1);
+                return rs.wasNull() ? null : v;
+            }
+        }
+    }
+
+    /**
+     * Move every live row in [from, to) into the archive file for {@code year}, creating it if
+     * needed, in one transaction. Returns the number of rows moved; an empty range creates no file.
+     * Rows stored in seconds stay where they are.
+     */
+    public int moveToArchive(int year, long from, long to) throws SQLException {
+        long fromMs = Math.max(from, Days.SECONDS_BELOW);
+        if (fromMs >= to) return 0;
+        try (Connection conn = dataSource.getConnection()) {
+            Lock exclusive = archive.exclusive();
+            exclusive.lock();
+            try {
+                return moveToArchive(conn, year, fromMs, to);
+            } finally {
+                archive.refresh();
+                exclusive.unlock();
+            }
+        }
+    }
+
+    private int moveToArchive(Connection conn, int year, long from, long to) throws SQLException {
+        try (PreparedStatement ps = statements.prepare(conn,
+                "SELECT 1 FROM main.Repetitions WHERE timestamp >= ? AND timestamp < ? LIMIT 1")) {
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return 0; // don't create empty year files
+            }
+        }
+        String colList = columns(conn, "main").stream().map(c -> "\"" + c + "\"").collect(Collectors.joining(","));
+
+        String alias = RepetitionArchiveStore.newAlias();
+        boolean wasAuto = conn.getAutoCommit();
+        conn.setAutoCommit(true); // ATTACH must run outside a transaction
+        RepetitionArchiveStore.attach(conn, archive.fileFor(year), alias);
+        try {
+            conn.setAutoCommit(false);
+            int n;
+            try {
+                run(conn, "CREATE TABLE IF NOT EXISTS " + alias + ".Repetitions AS SELECT " + colList
+                        + " FROM main.Repetitions WHERE 0");
+                run(conn, "CREATE UNIQUE INDEX IF NOT EXISTS " + alias
+                        + ".idx_archive_habit_timestamp ON Repetitions(habit, timestamp)");
+                // The alias is unique per call, so this one can't go through the statement cache
+                try (PreparedStatement ins = conn.prepareStatement(
+                        "INSERT OR REPLACE INTO " + alias + ".Repetitions (" + colList + ") SELECT " + colList
+                                + " FROM main.Repetitions WHERE timestamp >= ? AND timestamp < ?")) {
+                    ins.setLong(1, from);
+                    ins.setLong(2, to);
+                    n = ins.executeUpdate();
+                }
+                try (PreparedStatement del = statements.prepare(conn,
+                        "DELETE FROM main.Repetitions WHERE timestamp >= ? AND timestamp < ?")) {
+                    del.setLong(1, from);
+                    del.setLong(2, to);
+                    del.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            return n;
+        } finally {
+            try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
+            try { RepetitionArchiveStore.detach(conn, alias); } catch (SQLException ignore) {}
+            try { conn.setAutoCommit(wasAuto); } catch (SQLException ignore) {}
+        }
+    }
+
+    /**
+     * Deleting a day that already lives in an archive must also remove it there,
+     * otherwise the archived value would show through again on the next read.
+     * Caller holds the exclusive tier lock.
+     */
+    private void deleteArchived(long habitId, long dayUtc) throws SQLException {
+        int year = Days.yearOf(dayUtc);
+        if (!archive.archivedYears().contains(year)) return;
+        try (Connection conn = RepetitionArchiveStore.openFile(archive.fileFor(year));
+             PreparedStatement del = conn.prepareStatement(DELETE)) {
+            del.setLong(1, habitId);
+            del.setLong(2, dayUtc);
+            del.executeUpdate();
+        }
+    }
+
+    /**
+     * Fold all archived rows back into a standalone snapshot file so an exported .db stays
+     * a complete, self-contained database.
+     */
+    public void mergeArchivesInto(Path snapshot) throws SQLException {
+        List<Integer> years = archive.archivedYears();
+        if (years.isEmpty()) return;
+        try (Connection conn = RepetitionArchiveStore.openFile(snapshot)) {
+            List<String> mainCols = columns(conn, "main");
+            for (int year : years) {
+                String alias = "arch_" + year;
+                RepetitionArchiveStore.attach(conn, archive.fileFor(year), alias);
+                try {
+                    List<String> cols = new ArrayList<>(columns(conn, alias));
+                    cols.retainAll(mainCols);
+                    cols.remove("id"); // let the snapshot assign fresh ids
+                    String colList = cols.stream().map(c -> "\"" + c + "\"").collect(Collectors.joining(","));
+                    // Rows re-written after archiving live in main and take precedence
+                    run(conn, "INSERT OR IGNORE INTO main.Repetitions (" + colList + ") SELECT " + colList
+                            + " FROM " + alias + ".Repetitions");
+                } finally {
+                    RepetitionArchiveStore.detach(conn, alias);
+                }
+            }
+        }
+    }
+
+    // ============================== Helpers ==============================
+
+    private static void run(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) { st.execute(sql); }
+    }
+
+    private static List<String> columns(Connection conn, String schema) throws SQLException {
+        List<String> cols = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA " + schema + ".table_info(\"Repetitions\")")) {
+            while (rs.next()) cols.add(rs.getString("name"));
+        }
+        return cols;
+    }
+}
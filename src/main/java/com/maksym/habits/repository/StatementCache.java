@@ -0,0 +1,141 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.service.SlowQueryLog;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteConnection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Per-connection cache of prepared statements for the fixed SQL used by the JDBC repositories.
+ * Statements are prepared once on the physical SQLite connection underneath the pool and
+ * handed out wrapped: {@code close()} resets the statement and keeps it for the next request
+ * on that connection instead of finalizing it. Executions are still reported to
+ * {@link SlowQueryLog}, since these statements bypass the pool's interception layer.
+ * Don't pass per-request SQL (ATTACH aliases, literals) here; it would only churn the cache.
+ *
+ * The cached statements reference their connection, so entries can't be weak: they are dropped
+ * once the connection is closed, swept whenever a new physical connection shows up (which is
+ * what the pool does when it retires one after max-lifetime).
+ */
+@Component
+public class StatementCache {
+
+    private static final int MAX_PER_CONNECTION = 64;
+    private static final Pattern INSERT = Pattern.compile("^\\s*(INSERT|REPLACE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final SlowQueryLog slowQueryLog;
+    private final Map<SQLiteConnection, Map<String, PreparedStatement>> byConnection = new IdentityHashMap<>();
+
+    public StatementCache(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        SQLiteConnection physical = conn.unwrap(SQLiteConnection.class);
+        // A pooled physical connection is only ever used by one thread at a time
+        Map<String, PreparedStatement> statements = statementsOf(physical);
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = physical.prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+        return wrap(ps, sql, physical);
+    }
+
+    private synchronized Map<String, PreparedStatement> statementsOf(SQLiteConnection physical) {
+        Map<String, PreparedStatement> statements = byConnection.get(physical);
+        if (statements == null) {
+            byConnection.keySet().removeIf(StatementCache::isClosed);
+            statements = lru();
+            byConnection.put(physical, statements);
+        }
+        return statements;
+    }
+
+    // Physical connections with cached statements; for tests
+    synchronized int connections() {
+        return byConnection.size();
+    }
+
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static Map<String, PreparedStatement> lru() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= MAX_PER_CONNECTION) return false;
+                try { eldest.getValue().close(); } catch (SQLException ignore) {}
+                return true;
+            }
+        };
+    }
+
+    private PreparedStatement wrap(PreparedStatement target, String sql, Connection physical) {
+        List<ResultSet> open = new ArrayList<>(1);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("close")) {
+                        release(target, sql, open);
+                        return null;
+                    }
+                    if (name.equals("isClosed")) return target.isClosed();
+                    if (!name.startsWith("execute") || !slowQueryLog.isEnabled()) {
+                        Object result = invoke(target, method, args);
+                        if (result instanceof ResultSet rs) open.add(rs);
+                        return result;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        Object result = invoke(target, method, args);
+                        if (result instanceof ResultSet rs) open.add(rs);
+                        return result;
+                    } finally {
+                        slowQueryLog.record(sql, System.nanoTime() - start,
+                                target.getParameterMetaData().getParameterCount(), 0, physical);
+                    }
+                });
+    }
+
+    // Logical close: reset for reuse, keep the compiled statement
+    private static void release(PreparedStatement ps, String sql, List<ResultSet> open) throws SQLException {
+        for (ResultSet rs : open) {
+            try { rs.close(); } catch (SQLException ignore) {}
+        }
+        open.clear();
+        if (ps.isClosed()) return;
+        if (INSERT.matcher(sql).find()) {
+            // The driver keeps a last_insert_rowid() cursor open after every INSERT, which
+            // would block VACUUM/DETACH on this connection until the statement is finalized
+            ResultSet keys = ps.getGeneratedKeys();
+            if (keys != null) keys.close();
+        }
+        ps.clearParameters();
+        ps.clearBatch();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
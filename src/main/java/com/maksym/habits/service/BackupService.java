@@ -0,0 +1,284 @@
+package com.maksym.habits.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.sqlite.SQLiteConnection;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Scheduled online backup of the live database through SQLite's backup API.
+ * The copy advances a few pages per step and pauses between steps, so the shared
+ * lock on the source is only ever held for one short step at a time.
+ */
+@Service
+public class BackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String PREFIX = "habits-";
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final Path backupDir;
+    private final int keep;
+    private final int pagesPerStep;
+    private final long stepPauseMs;
+
+    private final int maxRestarts;
+    private final long timeBudgetMs;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Progress current;
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    // Request latency split by whether a backup was in progress when the request started
+    private final LatencyStats duringBackup = new LatencyStats();
+    private final LatencyStats idle = new LatencyStats();
+
+    public BackupService(DataSource dataSource,
+                         @Value("${habits.backup.enabled:false}") boolean enabled,
+                         @Value("${habits.backup.dir:backups}") String backupDir,
+                         @Value("${habits.backup.keep:24}") int keep,
+                         @Value("${habits.backup.pages-per-step:64}") int pagesPerStep,
+                         @Value("${habits.backup.step-pause-ms:5}") long stepPauseMs,
+                         @Value("${habits.backup.max-restarts:3}") int maxRestarts,
+                         @Value("${habits.backup.time-budget-ms:30000}") long timeBudgetMs) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.backupDir = Paths.get(backupDir).toAbsolutePath();
+        this.keep = Math.max(1, keep);
+        this.pagesPerStep = Math.max(1, pagesPerStep);
+        this.stepPauseMs = Math.max(0, stepPauseMs);
+        this.maxRestarts = Math.max(0, maxRestarts);
+        this.timeBudgetMs = Math.max(0, timeBudgetMs);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Scheduled(cron = "${habits.backup.cron:0 0 * * * *}")
+    public void scheduledBackup() {
+        if (!enabled) return;
+        try {
+            backupNow();
+        } catch (Exception e) {
+            log.warn("Online backup failed", e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Copy the live DB page-step by page-step into <dir>/habits-<stamp>.db,
+    // then drop the oldest snapshots beyond the configured count.
+    //
+    // A commit from any other connection makes SQLite restart the copy from
+    // page 0, so under steady writes a paced copy may never finish. Restarts
+    // are detected (remaining pages going back up); once the restart or time
+    // budget is spent, other writers are held off with BEGIN IMMEDIATE on a
+    // second connection and the rest is copied without pauses, which is what a
+    // single all-pages step would do. The driver's step loop can't be re-sized
+    // or stopped mid-run, so the hold replaces switching to one step.
+    // -------------------------------------------------------------------------
+    public Map<String, Object> backupNow() throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A backup is already in progress.");
+        }
+        try {
+            Files.createDirectories(backupDir);
+            String name = PREFIX + LocalDateTime.now().format(STAMP) + ".db";
+            Path target = backupDir.resolve(name);
+            Path part = backupDir.resolve(name + ".part");
+            Files.deleteIfExists(part);
+
+            Progress progress = new Progress();
+            current = progress;
+            Connection hold = null;
+
+            try (Connection conn = dataSource.getConnection()) {
+                SQLiteConnection sqlite = conn.unwrap(SQLiteConnection.class);
+                // Called after every successful step, once the source lock has been released
+                Connection[] holder = {null};
+                int rc = sqlite.getDatabase().backup("main", part.toString(), (remaining, pageCount) -> {
+                    progress.step(remaining, pageCount);
+                    if (remaining == 0) return;
+                    if (holder[0] == null && progress.overBudget(maxRestarts, timeBudgetMs)) {
+                        holder[0] = holdWriters();
+                        if (holder[0] != null) progress.writersHeldAt = System.nanoTime();
+                    }
+                    if (holder[0] == null && stepPauseMs > 0) {
+                        try {
+                            Thread.sleep(stepPauseMs);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }, 100, 100, pagesPerStep);
+                hold = holder[0];
+                if (rc != 0) throw new SQLException("SQLite backup failed with code " + rc);
+            } catch (Exception e) {
+                try { Files.deleteIfExists(part); } catch (IOException ignore) {}
+                throw e;
+            } finally {
+                if (hold != null) {
+                    releaseWriters(hold);
+                    progress.writersReleasedAt = System.nanoTime();
+                }
+                current = null;
+            }
+
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            List<String> removed = rotate();
+
+            Map<String, Object> run = progress.snapshot();
+            run.put("file", name);
+            run.put("bytes", Files.size(target));
+            run.put("finishedAt", LocalDateTime.now().toString());
+            run.put("rotatedOut", removed);
+            lastRun = Collections.unmodifiableMap(run);
+            log.info("Online backup written: {}", run);
+            return lastRun;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // BEGIN IMMEDIATE takes the write lock without blocking readers, so the backup keeps
+    // reading while every other writer waits in its busy_timeout. Null if it couldn't be taken yet.
+    private Connection holdWriters() {
+        Connection c = null;
+        try {
+            c = dataSource.getConnection();
+            try (Statement s = c.createStatement()) { s.execute("BEGIN IMMEDIATE"); }
+            log.info("Online backup over budget; holding writers until the copy completes");
+            return c;
+        } catch (SQLException e) {
+            log.debug("Could not hold writers for backup yet: {}", e.getMessage());
+            if (c != null) try { c.close(); } catch (SQLException ignore) {}
+            return null;
+        }
+    }
+
+    private static void releaseWriters(Connection c) {
+        if (c == null) return;
+        try (Statement s = c.createStatement()) {
+            s.execute("ROLLBACK");
+        } catch (SQLException e) {
+            log.warn("Could not release backup writer hold", e);
+        }
+        try { c.close(); } catch (SQLException ignore) {}
+    }
+
+    public List<String> listSnapshots() throws IOException {
+        if (!Files.isDirectory(backupDir)) return List.of();
+        try (Stream<Path> files = Files.list(backupDir)) {
+            // Timestamped names sort chronologically; newest first
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(PREFIX) && n.endsWith(".db"))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+
+    private List<String> rotate() throws IOException {
+        List<String> snapshots = listSnapshots();
+        List<String> removed = new ArrayList<>();
+        for (String n : snapshots.subList(Math.min(keep, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(backupDir.resolve(n));
+            removed.add(n);
+        }
+        return removed;
+    }
+
+    public void recordRequest(boolean backupInProgress, long nanos) {
+        (backupInProgress ? duringBackup : idle).record(nanos);
+    }
+
+    public Map<String, Object> status() throws IOException {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("running", running.get());
+        Progress p = current;
+        if (p != null) out.put("current", p.snapshot());
+        out.put("lastRun", lastRun);
+        out.put("snapshots", listSnapshots());
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("duringBackup", duringBackup.snapshot());
+        latency.put("idle", idle.snapshot());
+        out.put("requestLatency", latency);
+        return out;
+    }
+
+    /** Live counters of one backup run; written by the backup thread, read by status(). */
+    private static final class Progress {
+        final long started = System.nanoTime();
+        volatile long steps;
+        volatile long pages;
+        volatile long restarts;
+        volatile long writersHeldAt;
+        volatile long writersReleasedAt;
+        private int lastRemaining = Integer.MAX_VALUE;
+
+        void step(int remaining, int pageCount) {
+            // Remaining pages only go back up when SQLite restarted the copy from page 0
+            if (remaining > lastRemaining) restarts++;
+            lastRemaining = remaining;
+            steps++;
+            pages = pageCount;
+        }
+
+        boolean overBudget(int maxRestarts, long timeBudgetMs) {
+            return restarts >= maxRestarts || (System.nanoTime() - started) / 1_000_000L >= timeBudgetMs;
+        }
+
+        Map<String, Object> snapshot() {
+            long held = writersHeldAt;
+            long released = writersReleasedAt != 0 ? writersReleasedAt : System.nanoTime();
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("pages", pages);
+            out.put("steps", steps);
+            out.put("restarts", restarts);
+            out.put("durationMs", (System.nanoTime() - started) / 1_000_000L);
+            out.put("writersHeld", held != 0);
+            if (held != 0) out.put("writersHeldMs", (released - held) / 1_000_000L);
+            return out;
+        }
+    }
+
+    private static final class LatencyStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.sum();
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("requests", n);
+            out.put("avgMs", n == 0 ? 0.0 : totalNanos.sum() / 1e6 / n);
+            out.put("maxMs", maxNanos.get() / 1e6);
+            return out;
+        }
+    }
+}
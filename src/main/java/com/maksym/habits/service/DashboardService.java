@@ -0,0 +1,57 @@
+package com.maksym.habits.service;
+
+import com.maksym.habits.repository.RepetitionJdbcRepository;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Landing-page payload: every non-archived habit in position order with one value per day
+ * for the last N days, built from a single LEFT JOIN over the (habit, timestamp) index and
+ * cached until the next write.
+ */
+@Service
+public class DashboardService {
+
+    public static final int MAX_DAYS = 366;
+
+    private final RepetitionJdbcRepository repetitions;
+    private final DataVersion dataVersion;
+
+    private final Map<Integer, Entry> cache = new ConcurrentHashMap<>();
+
+    private record Entry(long version, long today, Map<String, Object> payload) {}
+
+    public DashboardService(RepetitionJdbcRepository repetitions, DataVersion dataVersion) {
+        this.repetitions = repetitions;
+        this.dataVersion = dataVersion;
+    }
+
+    public Map<String, Object> dashboard(int days) throws SQLException {
+        if (days < 1 || days > MAX_DAYS) {
+            throw new IllegalArgumentException("days must be between 1 and " + MAX_DAYS);
+        }
+        long today = Days.toUtcMidnight(System.currentTimeMillis());
+        // Read the version before querying: a write racing the query only makes the entry stale sooner
+        long version = dataVersion.current();
+        Entry e = cache.get(days);
+        if (e != null && e.version() == version && e.today() == today) return e.payload();
+
+        Map<String, Object> payload = load(days, today);
+        cache.put(days, new Entry(version, today, payload));
+        return payload;
+    }
+
+    private Map<String, Object> load(int days, long today) throws SQLException {
+        long from = today - (days - 1) * Days.MS_PER_DAY;
+        List<Map<String, Object>> habits = repetitions.activeHabitsWithValues(from, days);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("from", from);
+        out.put("days", days);
+        out.put("habits", Collections.unmodifiableList(habits));
+        return Collections.unmodifiableMap(out);
+    }
+}
@@ -0,0 +1,23 @@
+package com.maksym.habits.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter bumped after every committed write to Habits or Repetitions.
+ * Read-side caches key their entries on it instead of tracking individual rows.
+ */
+@Component
+public class DataVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public long bump() {
+        return version.incrementAndGet();
+    }
+}
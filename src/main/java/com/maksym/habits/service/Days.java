@@ -0,0 +1,47 @@
+package com.maksym.habits.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Day arithmetic shared by the controllers, services and repositories. Repetitions are keyed
+ * by UTC-midnight epoch millis; older Loop exports store seconds, which {@link #toMs} accepts.
+ */
+public final class Days {
+
+    public static final long MS_PER_DAY = 86_400_000L;
+    // Anything below this is read as seconds: in millis it would be before March 1973
+    public static final long SECONDS_BELOW = 100_000_000_000L;
+    // 3000-01-01T00:00:00Z; later timestamps are rejected as client errors
+    private static final long LATEST_MS = 32_503_680_000_000L;
+
+    private Days() {}
+
+    /** {@code ts} in epoch millis, converting it from seconds if it looks like seconds. */
+    public static long toMs(long ts) {
+        return ts < SECONDS_BELOW ? ts * 1000L : ts;
+    }
+
+    /** Whether a client timestamp (seconds or millis) lies between the epoch and the year 3000. */
+    public static boolean isSupported(long ts) {
+        return ts >= 0 && toMs(ts) < LATEST_MS;
+    }
+
+    public static long toUtcMidnight(long epochMs) {
+        return epochMs - Math.floorMod(epochMs, MS_PER_DAY);
+    }
+
+    /** The UTC day a stored timestamp (seconds or millis) falls on. */
+    public static long dayOf(long ts) {
+        return toUtcMidnight(toMs(ts));
+    }
+
+    public static int yearOf(long epochMs) {
+        return Instant.ofEpochMilli(epochMs).atZone(ZoneOffset.UTC).getYear();
+    }
+
+    public static long yearStart(int year) {
+        return LocalDate.of(year, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
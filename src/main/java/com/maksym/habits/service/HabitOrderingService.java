@@ -0,0 +1,139 @@
+package com.maksym.habits.service;
+
+import com.maksym.habits.repository.HabitJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sparse ordering keys for {@code Habits.position}. Positions are spaced {@link #GAP} apart,
+ * so moving a habit between two neighbours is a single-row UPDATE to the midpoint. Only when
+ * two neighbours end up adjacent is the whole list renumbered, inline if the move needs it,
+ * otherwise in the background once the gap gets tight.
+ */
+@Service
+public class HabitOrderingService {
+
+    private static final Logger log = LoggerFactory.getLogger(HabitOrderingService.class);
+
+    public static final int GAP = 1024;
+    // Neighbours closer than this get the list renumbered in the background
+    private static final int MIN_GAP = 8;
+
+    private final HabitJdbcRepository habits;
+    private final DataVersion dataVersion;
+    private final ExecutorService rebalancer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "habit-rebalance");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean rebalanceQueued = new AtomicBoolean(false);
+
+    public HabitOrderingService(HabitJdbcRepository habits, DataVersion dataVersion) {
+        this.habits = habits;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Place habit {@code id} directly after {@code afterId} and/or directly before {@code beforeId}.
+     * Either neighbour may be null to move to the top or bottom of the list.
+     * Returns null if the habit or a given neighbour does not exist.
+     */
+    public Map<String, Object> move(long id, Long afterId, Long beforeId) throws SQLException {
+        if (afterId == null && beforeId == null) {
+            throw new IllegalArgumentException("Expected \"after\" and/or \"before\" neighbour id.");
+        }
+        if ((afterId != null && afterId == id) || (beforeId != null && beforeId == id)) {
+            throw new IllegalArgumentException("A habit cannot be its own neighbour.");
+        }
+
+        Placement p = habits.inTransaction(conn -> place(conn, id, afterId, beforeId));
+        if (p == null) return null;
+        dataVersion.bump();
+
+        if (!p.rebalanced() && p.lo() != null && p.hi() != null
+                && Math.min(p.position() - p.lo(), p.hi() - p.position()) < MIN_GAP) {
+            scheduleRebalance();
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("id", id);
+        out.put("position", p.position());
+        out.put("rebalanced", p.rebalanced());
+        return out;
+    }
+
+    private record Placement(int position, Integer lo, Integer hi, boolean rebalanced) {}
+
+    // Null if the habit or one of its anchors doesn't exist. Runs inside one transaction; errors
+    // are returned rather than thrown so they don't come back translated by the repository proxy.
+    private Placement place(Connection conn, long id, Long afterId, Long beforeId) throws SQLException {
+        if (!habits.exists(conn, id)
+                || (afterId != null && !habits.exists(conn, afterId))
+                || (beforeId != null && !habits.exists(conn, beforeId))) {
+            return null;
+        }
+        // Legacy rows without a position: give everyone proper keys first
+        if (habits.hasUnpositioned(conn)) habits.writePositions(conn, habits.orderedIds(conn, null), GAP);
+
+        Integer lo = afterId != null ? habits.position(conn, afterId) : null;
+        Integer hi = beforeId != null ? habits.position(conn, beforeId) : null;
+        // Only one anchor given: the other side is whatever currently sits next to it
+        if (lo == null) lo = habits.neighbour(conn, id, hi, false);
+        if (hi == null) hi = habits.neighbour(conn, id, lo, true);
+
+        // A new key only lands directly next to an anchor whose key no other row shares; with a
+        // tie it would also pass the rows ordered after (or before) the anchor by id
+        boolean tied = (afterId != null && habits.sharesPosition(conn, lo, afterId, id))
+                || (beforeId != null && habits.sharesPosition(conn, hi, beforeId, id));
+        if (!tied) {
+            if (lo == null) return new Placement(setPosition(conn, id, hi - GAP), null, hi, false);
+            if (hi == null) return new Placement(setPosition(conn, id, lo + GAP), lo, null, false);
+            if (hi - lo >= 2) return new Placement(setPosition(conn, id, lo + (hi - lo) / 2), lo, hi, false);
+        }
+        // No room between the neighbours, or the anchor's key is shared: renumber inline
+        return new Placement(renumber(conn, id, afterId, beforeId), lo, hi, true);
+    }
+
+    private int setPosition(Connection conn, long id, int position) throws SQLException {
+        habits.setPosition(conn, id, position);
+        return position;
+    }
+
+    public void scheduleRebalance() {
+        if (!rebalanceQueued.compareAndSet(false, true)) return;
+        rebalancer.execute(() -> {
+            rebalanceQueued.set(false);
+            try {
+                rebalance();
+            } catch (Exception e) {
+                log.warn("Habit position rebalance failed", e);
+            }
+        });
+    }
+
+    /** Renumber every habit to i * GAP in its current order, touching only rows that change. */
+    public int rebalance() throws SQLException {
+        int changed = habits.inTransaction(conn -> habits.writePositions(conn, habits.orderedIds(conn, null), GAP));
+        if (changed > 0) dataVersion.bump();
+        return changed;
+    }
+
+    // Gap exhausted: splice the moved habit into the ordered list and renumber everything.
+    private int renumber(Connection conn, long id, Long afterId, Long beforeId) throws SQLException {
+        List<Long> ids = habits.orderedIds(conn, id);
+        int at = afterId != null ? ids.indexOf(afterId) + 1 : ids.indexOf(beforeId);
+        ids.add(at, id);
+        habits.writePositions(conn, ids, GAP);
+        return at * GAP;
+    }
+}
@@ -1,54 +1,66 @@
 package com.maksym.habits.service;
 
 import com.maksym.habits.model.Habit;
-import com.maksym.habits.repository.HabitRepository;
+import com.maksym.habits.repository.HabitJdbcRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class HabitService {
 
-    private final HabitRepository repository;
+    private final HabitJdbcRepository repository;
+    private final DataVersion dataVersion;
 
     public Habit create(Habit habit) {
-        return repository.save(habit);
+        Habit saved;
+        try {
+            saved = repository.insert(habit);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create habit", e);
+        }
+        dataVersion.bump();
+        return saved;
     }
 
-    public Habit update(Integer id, Habit habit) {
-        Habit existing = repository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Habit not found with id " + id));
-
-        // Copy updatable fields
-        existing.setArchived(habit.getArchived());
-        existing.setColor(habit.getColor());
-        existing.setDescription(habit.getDescription());
-        existing.setFreqDen(habit.getFreqDen());
-        existing.setFreqNum(habit.getFreqNum());
-        existing.setHighlight(habit.getHighlight());
-        existing.setName(habit.getName());
-        existing.setPosition(habit.getPosition());
-        existing.setReminderHour(habit.getReminderHour());
-        existing.setReminderMin(habit.getReminderMin());
-        existing.setReminderDays(habit.getReminderDays());
-        existing.setType(habit.getType());
-        existing.setTargetType(habit.getTargetType());
-        existing.setTargetValue(habit.getTargetValue());
-        existing.setUnit(habit.getUnit());
-        existing.setQuestion(habit.getQuestion());
-        existing.setUuid(habit.getUuid());
-
-        return repository.save(existing);
+    /**
+     * Update the {@code supplied} fields of habit {@code id} to their values in {@code habit};
+     * every other column keeps its stored value. Names not in
+     * {@link HabitJdbcRepository#UPDATABLE_COLUMNS} (such as {@code id}) are ignored.
+     *
+     * @return the habit as stored after the update, or empty if it does not exist
+     */
+    public Optional<Habit> update(Integer id, Habit habit, Set<String> supplied) {
+        Map<String, Object> fields = HabitJdbcRepository.fieldsOf(habit);
+        fields.keySet().retainAll(supplied);
+        try {
+            if (repository.update(id, fields) == 0) return Optional.empty();
+            if (!fields.isEmpty()) dataVersion.bump();
+            return repository.findById(id);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update habit " + id, e);
+        }
     }
 
     public Optional<Habit> get(Integer id) {
-        return repository.findById(id);
+        try {
+            return repository.findById(id);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load habit " + id, e);
+        }
     }
 
     public List<Habit> getAll() {
-        return repository.findAll();
+        try {
+            return repository.findAll();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load habits", e);
+        }
     }
 }
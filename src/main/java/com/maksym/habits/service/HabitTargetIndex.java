@@ -0,0 +1,77 @@
+package com.maksym.habits.service;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import static com.maksym.habits.service.Days.MS_PER_DAY;
+
+/**
+ * Prefix sums over one habit's daily values for a fixed span of days. Any window sum inside the
+ * span is two array reads; writing a day patches the sums after it. The span is chosen by the
+ * caller from the range being evaluated and never grows: days outside it are ignored, so a stray
+ * far-off timestamp can't size the arrays. Days are UTC-midnight epoch millis.
+ */
+public class HabitTargetIndex {
+
+    private final long origin;    // first covered day
+    private final long[] daily;   // daily[i] = value on origin + i days
+    private final long[] prefix;  // prefix[i] = daily[0] + ... + daily[i - 1]
+
+    /** Index the {@code days} days starting at {@code origin}; values on other days are dropped. */
+    public HabitTargetIndex(long origin, int days, SortedMap<Long, Long> values) {
+        this.origin = origin;
+        this.daily = new long[Math.max(0, days)];
+        this.prefix = new long[daily.length + 1];
+        for (Map.Entry<Long, Long> e : values.subMap(origin, end()).entrySet()) {
+            daily[dayIndex(e.getKey())] += e.getValue();
+        }
+        rebuildPrefix(0);
+    }
+
+    public long origin() {
+        return origin;
+    }
+
+    /** First day after the span. */
+    public long end() {
+        return origin + daily.length * MS_PER_DAY;
+    }
+
+    public boolean covers(long fromDay, long toDay) {
+        return fromDay >= origin && toDay <= end();
+    }
+
+    /**
+     * Sum of the values on the {@code window} days ending with {@code day}, inclusive.
+     * Days outside the span count as 0.
+     */
+    public synchronized long windowSum(long day, int window) {
+        long hi = Math.floorDiv(day - origin, MS_PER_DAY) + 1;  // exclusive
+        long lo = hi - Math.max(1, window);
+        return prefixAt(hi) - prefixAt(lo);
+    }
+
+    /** Record the value for one day; 0 clears it. Days outside the span are ignored. */
+    public synchronized void set(long day, long value) {
+        if (day < origin || day >= end()) return;
+        int i = dayIndex(day);
+        if (daily[i] == value) return;
+        daily[i] = value;
+        rebuildPrefix(i);
+    }
+
+    private void rebuildPrefix(int from) {
+        for (int i = from; i < daily.length; i++) prefix[i + 1] = prefix[i] + daily[i];
+    }
+
+    // Indices outside the span clamp: nothing before it, the full total after it
+    private long prefixAt(long i) {
+        if (i <= 0) return 0;
+        if (i >= prefix.length) return prefix[prefix.length - 1];
+        return prefix[(int) i];
+    }
+
+    private int dayIndex(long day) {
+        return (int) Math.floorDiv(day - origin, MS_PER_DAY);
+    }
+}
@@ -0,0 +1,98 @@
+package com.maksym.habits.service;
+
+import com.maksym.habits.repository.RepetitionArchiveStore;
+import com.maksym.habits.repository.RepetitionJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Tiered storage for {@code Repetitions}: rows older than the configured horizon are moved
+ * out of the live database into one SQLite file per UTC year ({@code repetitions_YYYY.db}).
+ * Reads that reach back that far ATTACH the needed year files on demand through
+ * {@link RepetitionArchiveStore}; the statements themselves live in {@link RepetitionJdbcRepository}.
+ */
+@Service
+public class RepetitionArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(RepetitionArchiveService.class);
+
+    private final RepetitionArchiveStore store;
+    private final RepetitionJdbcRepository repetitions;
+    private final boolean enabled;
+    private final int horizonDays;
+
+    public RepetitionArchiveService(RepetitionArchiveStore store, RepetitionJdbcRepository repetitions,
+                                    @Value("${habits.archive.enabled:false}") boolean enabled,
+                                    @Value("${habits.archive.horizon-days:365}") int horizonDays) {
+        this.store = store;
+        this.repetitions = repetitions;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Scheduled(cron = "${habits.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        if (!enabled) return;
+        try {
+            Map<Integer, Integer> moved = archiveNow();
+            if (!moved.isEmpty()) log.info("Archived repetitions per year: {}", moved);
+        } catch (Exception e) {
+            log.warn("Repetition archiving failed", e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Move every repetition older than the horizon into its year file.
+    // Returns the number of rows moved per year.
+    // -------------------------------------------------------------------------
+    public Map<Integer, Integer> archiveNow() throws Exception {
+        long cutoff = Days.toUtcMidnight(System.currentTimeMillis()) - horizonDays * Days.MS_PER_DAY;
+        Map<Integer, Integer> moved = new TreeMap<>();
+
+        Long oldest = repetitions.oldestBefore(cutoff);
+        if (oldest == null) return moved;
+
+        Files.createDirectories(store.dir());
+        for (int year = Days.yearOf(oldest); year <= Days.yearOf(cutoff - 1); year++) {
+            long from = Days.yearStart(year);
+            long to = Math.min(Days.yearStart(year + 1), cutoff);
+            int n = repetitions.moveToArchive(year, from, to);
+            if (n > 0) moved.put(year, n);
+        }
+        return moved;
+    }
+
+    // -------------------------------------------------------------------------
+    // Import: the uploaded file replaces the whole dataset, archives included.
+    // Drop the old year files, then re-tier the freshly imported history.
+    // -------------------------------------------------------------------------
+    public void resetAfterImport() throws Exception {
+        Lock exclusive = store.exclusive();
+        exclusive.lock();
+        try {
+            store.refresh(); // pick up year files that appeared on disk since startup
+            for (int year : store.archivedYears()) {
+                Files.deleteIfExists(store.fileFor(year));
+            }
+        } finally {
+            store.refresh();
+            exclusive.unlock();
+        }
+        if (enabled) archiveNow();
+    }
+
+    public List<Integer> archivedYears() {
+        return store.archivedYears();
+    }
+}
@@ -0,0 +1,138 @@
+package com.maksym.habits.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes read payloads once per data version and keeps the bytes, plain and gzipped, so
+ * hot responses are neither re-serialized nor re-compressed per request. Handles the same
+ * formats the message converters do (JSON, CBOR, Smile), picked from the Accept header.
+ * Tomcat's own compression still covers everything that doesn't go through here; it skips
+ * responses that already carry a Content-Encoding.
+ */
+@Service
+public class ResponseEncoder {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+    // Preference order when the client accepts several equally
+    private static final List<MediaType> PRODUCIBLE = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+
+    private final Map<MediaType, ObjectMapper> mappers;
+    private final int gzipMinBytes;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /** One encoded body; {@code gzip} is null when the body is below the compression threshold. */
+    public record Encoded(MediaType type, byte[] body, byte[] gzip) {}
+
+    private record Entry(long version, Encoded encoded) {}
+
+    public ResponseEncoder(ObjectMapper json,
+                           @Value("${server.compression.min-response-size:2KB}") DataSize gzipMin) {
+        // Same configuration as the JSON mapper, only the wire format differs
+        this.mappers = Map.of(
+                MediaType.APPLICATION_JSON, json,
+                MediaType.APPLICATION_CBOR, json.copyWith(new CBORFactory()),
+                SMILE, json.copyWith(new SmileFactory()));
+        this.gzipMinBytes = (int) gzipMin.toBytes();
+    }
+
+    /**
+     * The encoded payload for {@code key} in {@code type} at {@code version}, loading and encoding
+     * it only if the cached entry is missing or older. Read the version before anything the loader
+     * depends on: a write racing the load then only makes the entry stale sooner.
+     */
+    public Encoded cached(String key, MediaType type, long version, Callable<?> loader) throws Exception {
+        String k = key + '|' + type;
+        Entry e = cache.get(k);
+        if (e != null && e.version() == version) return e.encoded();
+        Encoded encoded = encode(loader.call(), type);
+        cache.put(k, new Entry(version, encoded));
+        return encoded;
+    }
+
+    public Encoded encode(Object value, MediaType type) throws IOException {
+        byte[] body = mappers.get(type).writeValueAsBytes(value);
+        return new Encoded(type, body, body.length >= gzipMinBytes ? gzip(body) : null);
+    }
+
+    /** Best producible format for an Accept header; JSON when absent or when nothing else is preferred. */
+    public MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) return MediaType.APPLICATION_JSON;
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = MediaType.APPLICATION_JSON;
+        double bestScore = 0;
+        for (MediaType p : PRODUCIBLE) {
+            // The most specific range naming p decides its quality, so "application/json;q=0, */*"
+            // rules JSON out rather than letting the wildcard bring it back
+            MediaType match = null;
+            for (MediaType a : accepted) {
+                if (!a.includes(p)) continue;
+                if (match == null || specificity(a) > specificity(match)
+                        || (specificity(a) == specificity(match) && a.getQualityValue() > match.getQualityValue())) {
+                    match = a;
+                }
+            }
+            if (match == null || match.getQualityValue() == 0) continue;
+            // Quality first (q has at most three decimals); an exact match beats a wildcard of the same quality
+            double score = match.getQualityValue() + (match.equalsTypeAndSubtype(p) ? 0.0001 : 0);
+            if (score > bestScore) {
+                bestScore = score;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    private static int specificity(MediaType range) {
+        if (range.isWildcardType()) return 0;
+        return range.isWildcardSubtype() ? 1 : 2;
+    }
+
+    /** Whether Accept-Encoding allows gzip; an explicit {@code gzip;q=0} wins over {@code *}. */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Double gzip = null, any = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            double q = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try { q = Double.parseDouble(param.substring(2)); } catch (NumberFormatException ignore) {}
+                }
+            }
+            String coding = tokens[0].trim();
+            if (coding.equalsIgnoreCase("gzip")) gzip = q;
+            else if (coding.equals("*")) any = q;
+        }
+        if (gzip != null) return gzip > 0;
+        return any != null && any > 0;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+}
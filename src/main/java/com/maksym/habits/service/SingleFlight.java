@@ -0,0 +1,46 @@
+package com.maksym.habits.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces identical concurrent calls: the first caller for a key runs the loader on its own
+ * thread, and callers arriving while it runs wait for the same result instead of running it
+ * again. Nothing is kept once the call completes, so put whatever makes a result stale (the
+ * data version, for instance) into the key.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public V run(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> pending = inFlight.putIfAbsent(key, mine);
+        if (pending != null) {
+            return await(pending);
+        }
+        try {
+            V value = loader.call();
+            mine.complete(value);
+            return value;
+        } catch (Throwable t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> pending) throws Exception {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            // Rethrow what the loader threw, so waiters fail exactly like the caller that ran it
+            if (e.getCause() instanceof Exception cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.maksym.habits.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Ring buffer of statements that ran longer than the configured threshold, each with its
+ * normalized SQL shape, bind count and SQLite's EXPLAIN QUERY PLAN captured at the time.
+ * Fed by the JDBC interception layer in {@code config.StatementTimingProxy}.
+ */
+@Service
+public class SlowQueryLog {
+
+    private static final Pattern ALIAS = Pattern.compile("\\b(\\w+?_)[0-9a-f]{32}\\b");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(SELECT|INSERT|UPDATE|DELETE|REPLACE|WITH)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final int capacity;
+
+    private final Deque<Map<String, Object>> entries = new ArrayDeque<>();
+    private final LongAdder timed = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    public SlowQueryLog(@Value("${habits.slow-query.enabled:true}") boolean enabled,
+                        @Value("${habits.slow-query.threshold-ms:100}") long thresholdMs,
+                        @Value("${habits.slow-query.capacity:100}") int capacity) {
+        this.enabled = enabled;
+        this.thresholdNanos = thresholdMs * 1_000_000L;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called after every timed statement. {@code conn} is the un-intercepted connection the
+     * statement ran on; the plan is captured there, before any ATTACHed aliases go away.
+     */
+    public void record(String sql, long nanos, int binds, int batchSize, Connection conn) {
+        timed.increment();
+        if (nanos < thresholdNanos || sql == null) return;
+        slow.increment();
+
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("at", Instant.now().toString());
+        e.put("ms", nanos / 1e6);
+        e.put("sql", shape(sql));
+        e.put("binds", binds);
+        if (batchSize > 0) e.put("batch", batchSize);
+        e.put("plan", explain(sql, conn));
+
+        synchronized (entries) {
+            if (entries.size() == capacity) entries.removeFirst();
+            entries.addLast(Collections.unmodifiableMap(e));
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        List<Map<String, Object>> list;
+        synchronized (entries) {
+            list = new ArrayList<>(entries);
+        }
+        Collections.reverse(list); // newest first
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("thresholdMs", thresholdNanos / 1_000_000L);
+        out.put("statementsTimed", timed.sum());
+        out.put("slowStatements", slow.sum());
+        out.put("entries", list);
+        return out;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    // Literals and per-request ATTACH aliases collapse so the same statement always has one shape
+    static String shape(String sql) {
+        String s = ALIAS.matcher(sql).replaceAll("$1*");
+        s = STRING_LITERAL.matcher(s).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        return WHITESPACE.matcher(s).replaceAll(" ").trim();
+    }
+
+    private static List<String> explain(String sql, Connection conn) {
+        if (conn == null || !EXPLAINABLE.matcher(sql).find()) return List.of();
+        List<String> plan = new ArrayList<>();
+        // Unbound parameters are NULL, which is fine for planning purposes
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) plan.add(rs.getString("detail"));
+        } catch (SQLException e) {
+            plan.add("(plan unavailable: " + e.getMessage() + ")");
+        }
+        return plan;
+    }
+}
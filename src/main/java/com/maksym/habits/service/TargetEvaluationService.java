@@ -0,0 +1,135 @@
+package com.maksym.habits.service;
+
+import com.maksym.habits.repository.HabitJdbcRepository;
+import com.maksym.habits.repository.RepetitionJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.maksym.habits.service.Days.MS_PER_DAY;
+
+/**
+ * Target evaluation for measurable habits ({@code type = 1}): for each day, the sum of values
+ * over the trailing {@code freq_den}-day window and whether it meets {@code target_value}
+ * (at least for {@code target_type = 0}, at most for {@code 1}). Backed by one lazily built
+ * {@link HabitTargetIndex} per habit, patched on every repetition write. An index spans only the
+ * last range evaluated plus its window, so its size is bounded by {@link #MAX_DAYS} and
+ * {@link #MAX_WINDOW} whatever timestamps the data holds; a range it doesn't cover rebuilds it.
+ *
+ * Builds and patches of one habit's index run under that habit's lock, and a patch re-reads the
+ * day's committed value instead of applying the value it was handed. Whatever order racing
+ * writes, builds and patches run in, the last one under the lock sees every commit before it,
+ * so the index can't keep a lost or out-of-order write.
+ */
+@Service
+public class TargetEvaluationService {
+
+    private static final Logger log = LoggerFactory.getLogger(TargetEvaluationService.class);
+
+    public static final int MAX_DAYS = 3660;
+    // Longer freq_den values are evaluated over this many days
+    public static final int MAX_WINDOW = 3660;
+    // Loop stores measurable values in thousandths of the habit's unit
+    private static final double VALUE_SCALE = 1000.0;
+
+    private final HabitJdbcRepository habits;
+    private final RepetitionJdbcRepository repetitions;
+    private final Map<Long, HabitTargetIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<Long, Object> locks = new ConcurrentHashMap<>();
+    // Bumped by invalidateAll(); a build that started before it must not store its index
+    private final AtomicLong epoch = new AtomicLong();
+
+    public TargetEvaluationService(HabitJdbcRepository habits, RepetitionJdbcRepository repetitions) {
+        this.habits = habits;
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Bring a built index in step with a committed upsert or delete of one day. Never throws:
+     * the write has already committed, so a failure here only drops the index.
+     */
+    public void onRepetitionChanged(long habitId, long dayUtc) {
+        // Always take the lock: a build in progress hasn't stored its index yet, and this
+        // write may have committed after the build read the day
+        synchronized (lock(habitId)) {
+            HabitTargetIndex index = indexes.get(habitId);
+            if (index == null || !index.covers(dayUtc, dayUtc + MS_PER_DAY)) return;
+            try {
+                index.set(dayUtc, repetitions.valueOn(habitId, dayUtc));
+            } catch (SQLException | RuntimeException e) {
+                // Can't tell what the day holds now; rebuild on next use rather than keep a guess
+                indexes.remove(habitId);
+                log.warn("Dropped target index of habit {} after failing to refresh day {}", habitId, dayUtc, e);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        indexes.clear();
+    }
+
+    /**
+     * Evaluate every day in [fromDay, toDay). Returns null if the habit does not exist.
+     *
+     * @throws IllegalArgumentException if the habit is not measurable or the range is invalid
+     */
+    public Map<String, Object> evaluate(long habitId, long fromDay, long toDay) throws SQLException {
+        int days = (int) Math.min(Integer.MAX_VALUE, Math.max(0, (toDay - fromDay) / MS_PER_DAY));
+        if (days < 1 || days > MAX_DAYS) {
+            throw new IllegalArgumentException("Range must cover between 1 and " + MAX_DAYS + " days.");
+        }
+
+        Map<String, Object> habit = habits.findTarget(habitId);
+        if (habit == null) return null;
+        if ((int) habit.get("type") != 1) {
+            throw new IllegalArgumentException("Habit " + habitId + " is not a measurable habit.");
+        }
+        int window = Math.min(MAX_WINDOW, Math.max(1, (int) habit.get("freqDen")));
+        boolean atMost = (int) habit.get("targetType") == 1;
+        double target = (double) habit.get("targetValue");
+
+        HabitTargetIndex index = index(habitId, fromDay - (window - 1) * MS_PER_DAY, toDay);
+        double[] sums = new double[days];
+        boolean[] met = new boolean[days];
+        for (int i = 0; i < days; i++) {
+            double sum = index.windowSum(fromDay + i * MS_PER_DAY, window) / VALUE_SCALE;
+            sums[i] = sum;
+            met[i] = atMost ? sum <= target : sum >= target;
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>(habit);
+        out.put("from", fromDay);
+        out.put("days", days);
+        out.put("sums", sums);
+        out.put("met", met);
+        return out;
+    }
+
+    // An index covering [fromDay, toDay), reusing the stored one if it does
+    private HabitTargetIndex index(long habitId, long fromDay, long toDay) throws SQLException {
+        HabitTargetIndex index = indexes.get(habitId);
+        if (index != null && index.covers(fromDay, toDay)) return index;
+        synchronized (lock(habitId)) {
+            index = indexes.get(habitId);
+            if (index != null && index.covers(fromDay, toDay)) return index;
+            long startedAt = epoch.get();
+            index = new HabitTargetIndex(fromDay, (int) ((toDay - fromDay) / MS_PER_DAY),
+                    repetitions.dailyValues(habitId, fromDay, toDay));
+            // Writes committed during the build wait on this lock and patch the stored index
+            // afterwards; only an import (new epoch) makes the result unusable
+            if (epoch.get() == startedAt) indexes.put(habitId, index);
+            return index;
+        }
+    }
+
+    private Object lock(long habitId) {
+        return locks.computeIfAbsent(habitId, id -> new Object());
+    }
+}
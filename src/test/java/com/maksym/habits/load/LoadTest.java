@@ -0,0 +1,316 @@
+package com.maksym.habits.load;
+
+import com.maksym.habits.HabitsApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.maksym.habits.service.Days.MS_PER_DAY;
+
+/**
+ * Open-loop load test against a real app instance on a synthetic database.
+ * Not a unit test; run the main method with {@code key=value} arguments:
+ *
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.maksym.habits.load.LoadTest \
+ *       -Dexec.args="rate=200 duration=60 mix=listHabits:40,listRepetitions:30,upsertRepetition:25,reorderHabits:4,export:1"
+ *
+ * Arguments (defaults in {@link #DEFAULTS}):
+ *   db, habits, years, seed  synthetic database; regenerated unless {@code reuse=true} and the file exists
+ *   url                      test an already running instance instead of starting one
+ *   rate                     target requests per second, spread evenly
+ *   duration, warmup         measured and discarded seconds
+ *   mix                      relative weights per operation
+ *   concurrency              max requests in flight; beyond that the schedule waits
+ *   out                      report file, one per run so builds can be diffed
+ *
+ * Requests are issued on a fixed schedule and latency is measured from the scheduled time,
+ * not the send time, so a stalled server shows up in the tail instead of silently lowering
+ * the offered load.
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("db", "target/loadtest/habits.db"),
+            Map.entry("habits", "2000"),
+            Map.entry("years", "3"),
+            Map.entry("seed", "42"),
+            Map.entry("reuse", "false"),
+            Map.entry("url", ""),
+            Map.entry("rate", "100"),
+            Map.entry("duration", "60"),
+            Map.entry("warmup", "10"),
+            Map.entry("concurrency", "64"),
+            Map.entry("mix", "listHabits:40,listRepetitions:30,upsertRepetition:25,reorderHabits:4,export:1"),
+            Map.entry("out", ""));
+
+    private final Map<String, String> conf;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final Random rnd;
+    private final String base;
+    private final int habits;
+    private final long lastDay;
+    private final long firstDay;
+
+    private LoadTest(Map<String, String> conf, String base, long firstDay, long lastDay) {
+        this.conf = conf;
+        this.base = base;
+        this.habits = Integer.parseInt(conf.get("habits"));
+        this.rnd = new Random(Long.parseLong(conf.get("seed")));
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> conf = new LinkedHashMap<>(new TreeMap<>(DEFAULTS));
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq < 0 || !DEFAULTS.containsKey(a.substring(0, eq))) {
+                throw new IllegalArgumentException("Unknown argument: " + a + " (expected one of " + DEFAULTS.keySet() + ")");
+            }
+            conf.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+
+        Path db = Path.of(conf.get("db"));
+        int years = Integer.parseInt(conf.get("years"));
+        long lastDay = System.currentTimeMillis() / MS_PER_DAY * MS_PER_DAY;
+        long firstDay = lastDay - (365L * years - 1) * MS_PER_DAY;
+
+        String base = conf.get("url");
+        ServletWebServerApplicationContext app = null;
+        if (base.isEmpty()) {
+            if (!Boolean.parseBoolean(conf.get("reuse")) || !Files.exists(db)) {
+                System.out.println("Generating " + db + " ...");
+                SyntheticDatabase.Stats s = SyntheticDatabase.generate(db, Integer.parseInt(conf.get("habits")),
+                        years, Long.parseLong(conf.get("seed")));
+                System.out.printf("  %d habits, %d repetitions%n", s.habits(), s.repetitions());
+            }
+            app = (ServletWebServerApplicationContext) SpringApplication.run(HabitsApplication.class,
+                    "--server.port=0",
+                    "--spring.main.banner-mode=off",
+                    "--spring.datasource.url=jdbc:sqlite:" + db,
+                    "--spring.jpa.hibernate.ddl-auto=none",
+                    "--habits.archive.dir=" + db.toAbsolutePath().resolveSibling("archive"),
+                    "--habits.backup.enabled=false",
+                    "--logging.level.root=WARN");
+            base = "http://localhost:" + app.getWebServer().getPort();
+        }
+
+        try {
+            new LoadTest(conf, base, firstDay, lastDay).run();
+        } finally {
+            if (app != null) app.close();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Operations
+    // -------------------------------------------------------------------------
+
+    private HttpRequest listHabits() {
+        return get("/api/habits");
+    }
+
+    private HttpRequest listRepetitions() {
+        // Mostly the recent month the UI shows, sometimes an older page of history
+        long to = rnd.nextInt(5) == 0 ? randomDay() : lastDay + MS_PER_DAY;
+        return get("/api/repetitions?from=" + (to - 31 * MS_PER_DAY) + "&to=" + to);
+    }
+
+    private HttpRequest upsertRepetition() {
+        long day = lastDay - rnd.nextInt(14) * MS_PER_DAY;
+        String value = rnd.nextInt(10) == 0 ? "null" : String.valueOf(rnd.nextBoolean() ? 2 : (1 + rnd.nextInt(10)) * 1000);
+        return post("/api/repetitions", "{\"habitId\":" + randomHabit() + ",\"timestamp\":" + day
+                + ",\"value\":" + value + "}");
+    }
+
+    private HttpRequest reorderHabits() {
+        // A drag-and-drop result: the full order with one habit moved
+        List<Integer> ids = new ArrayList<>(habits);
+        for (int i = 1; i <= habits; i++) ids.add(i);
+        Integer moved = ids.remove(rnd.nextInt(ids.size()));
+        ids.add(rnd.nextInt(ids.size() + 1), moved);
+        return HttpRequest.newBuilder(URI.create(base + "/api/habits/reorder"))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(ids.toString()))
+                .build();
+    }
+
+    private HttpRequest export() {
+        return get("/api/export-db");
+    }
+
+    private HttpRequest next(String op) {
+        return switch (op) {
+            case "listHabits" -> listHabits();
+            case "listRepetitions" -> listRepetitions();
+            case "upsertRepetition" -> upsertRepetition();
+            case "reorderHabits" -> reorderHabits();
+            case "export" -> export();
+            default -> throw new IllegalArgumentException("Unknown operation in mix: " + op);
+        };
+    }
+
+    private int randomHabit() {
+        return 1 + rnd.nextInt(habits);
+    }
+
+    private long randomDay() {
+        return firstDay + (long) rnd.nextInt((int) ((lastDay - firstDay) / MS_PER_DAY) + 1) * MS_PER_DAY;
+    }
+
+    private HttpRequest get(String path) {
+        // Explicit JSON: with no Accept header GET /api/habits is served by the JPA HabitController
+        return HttpRequest.newBuilder(URI.create(base + path)).header("Accept", "application/json").GET().build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // Driver
+    // -------------------------------------------------------------------------
+
+    private void run() throws Exception {
+        double rate = Double.parseDouble(conf.get("rate"));
+        int warmup = Integer.parseInt(conf.get("warmup"));
+        int duration = Integer.parseInt(conf.get("duration"));
+        Map<String, Integer> mix = parseMix(conf.get("mix"));
+        List<String> ops = new ArrayList<>(mix.keySet());
+        int[] cumulative = new int[ops.size()];
+        int total = 0;
+        for (int i = 0; i < ops.size(); i++) cumulative[i] = total += mix.get(ops.get(i));
+
+        System.out.printf("Warming up for %ds at %.0f req/s against %s%n", warmup, rate, base);
+        drive(rate, warmup, ops, cumulative, total);
+        System.out.printf("Measuring for %ds%n", duration);
+        long start = System.nanoTime();
+        Map<String, Recorder> results = drive(rate, duration, ops, cumulative, total);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        String report = report(results, elapsed);
+        System.out.print(report);
+        Path out = conf.get("out").isEmpty()
+                ? Path.of("target/loadtest", "report-" + Instant.now().toString().replace(':', '-') + ".txt")
+                : Path.of(conf.get("out"));
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Files.writeString(out, report);
+        System.out.println("Report written to " + out);
+    }
+
+    private Map<String, Recorder> drive(double rate, int seconds, List<String> ops, int[] cumulative, int total)
+            throws InterruptedException {
+        Map<String, Recorder> results = new LinkedHashMap<>();
+        for (String op : ops) results.put(op, new Recorder());
+        Semaphore inFlight = new Semaphore(Integer.parseInt(conf.get("concurrency")));
+        long intervalNanos = (long) (1e9 / rate);
+        long count = (long) (rate * seconds);
+        long t0 = System.nanoTime();
+
+        for (long i = 0; i < count; i++) {
+            long scheduled = t0 + i * intervalNanos;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+
+            int pick = rnd.nextInt(total);
+            int k = 0;
+            while (cumulative[k] <= pick) k++;
+            String op = ops.get(k);
+            Recorder rec = results.get(op);
+            HttpRequest request = next(op);
+
+            inFlight.acquire();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((resp, err) -> {
+                        rec.record(System.nanoTime() - scheduled, err == null && resp.statusCode() < 400);
+                        inFlight.release();
+                    });
+        }
+        // Let everything still in flight finish before reporting
+        int permits = Integer.parseInt(conf.get("concurrency"));
+        if (!inFlight.tryAcquire(permits, 5, TimeUnit.MINUTES)) {
+            System.out.println("Warning: requests still in flight after 5 minutes");
+        }
+        return results;
+    }
+
+    private String report(Map<String, Recorder> results, double elapsedSeconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# habits load test ").append(Instant.now()).append('\n');
+        conf.forEach((k, v) -> sb.append("# ").append(k).append('=').append(v).append('\n'));
+        sb.append(String.format("%-18s %8s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        Recorder all = new Recorder();
+        for (Map.Entry<String, Recorder> e : results.entrySet()) {
+            sb.append(line(e.getKey(), e.getValue(), elapsedSeconds));
+            all.addAll(e.getValue());
+        }
+        sb.append(line("total", all, elapsedSeconds));
+        return sb.toString();
+    }
+
+    private static String line(String name, Recorder r, double elapsedSeconds) {
+        long[] sorted = r.sorted();
+        return String.format(Locale.ROOT, "%-18s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, sorted.length, r.errors.get(), sorted.length / elapsedSeconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            int weight = Integer.parseInt(kv[1]);
+            if (weight > 0) mix.put(kv[0], weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("Empty mix: " + spec);
+        return mix;
+    }
+
+    /** Latencies (nanos) for one operation; failed requests are counted and kept in the distribution. */
+    private static final class Recorder {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(long nanos, boolean ok) {
+            latencies.add(nanos);
+            if (!ok) errors.incrementAndGet();
+        }
+
+        void addAll(Recorder other) {
+            latencies.addAll(other.latencies);
+            errors.addAndGet(other.errors.get());
+        }
+
+        long[] sorted() {
+            long[] a = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(a);
+            return a;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.maksym.habits.load;
+
+import com.maksym.habits.HabitsApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.maksym.habits.service.Days.MS_PER_DAY;
+
+/**
+ * Builds a large, reproducible habits database for load testing. The schema comes from the
+ * application itself (one boot with {@code ddl-auto=create}, no web server), so it always
+ * matches the entities; the rows are then bulk-inserted over plain JDBC.
+ * The same seed always produces the same file.
+ *
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.maksym.habits.load.SyntheticDatabase \
+ *       -Dexec.args="target/loadtest/habits.db 2000 3"
+ */
+public class SyntheticDatabase {
+
+    private static final int POSITION_GAP = 1024;
+    private static final String[] NAMES = {"Run", "Read", "Meditate", "Water", "Stretch", "Journal",
+            "Walk", "Sleep early", "No sugar", "Practice guitar", "Study", "Push-ups"};
+    private static final String[] UNITS = {"km", "pages", "minutes", "glasses", "reps"};
+    private static final String[] NOTES = {"felt great", "short session", "skipped warm-up",
+            "with friends", "rainy day", "new personal best", "tired but done"};
+
+    public static void main(String[] args) throws Exception {
+        Path db = Path.of(args.length > 0 ? args[0] : "target/loadtest/habits.db");
+        int habits = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int years = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        Stats s = generate(db, habits, years, seed);
+        System.out.printf("%s: %d habits, %d repetitions (%d with notes), %.1f MB%n",
+                db, s.habits, s.repetitions, s.notes, Files.size(db) / 1e6);
+    }
+
+    public record Stats(int habits, long repetitions, long notes, long firstDay, long lastDay) {}
+
+    /** (Re)create {@code db} with {@code habits} habits and {@code years} years of daily history up to today. */
+    public static Stats generate(Path db, int habits, int years, long seed) throws Exception {
+        Files.createDirectories(db.toAbsolutePath().getParent());
+        Files.deleteIfExists(db);
+        createSchema(db);
+
+        Random rnd = new Random(seed);
+        long lastDay = LocalDate.now(ZoneOffset.UTC).toEpochDay() * MS_PER_DAY;
+        long firstDay = lastDay - (365L * years - 1) * MS_PER_DAY;
+        long repetitions = 0, notes = 0;
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+            try (Statement st = conn.createStatement()) {
+                // Bulk load only; neither setting is persisted, the app opens the file with its own defaults
+                st.execute("PRAGMA journal_mode=MEMORY");
+                st.execute("PRAGMA synchronous=OFF");
+                st.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_repetitions_habit_timestamp "
+                        + "ON Repetitions(habit, timestamp)");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement h = conn.prepareStatement(
+                    "INSERT INTO Habits(id, name, description, question, color, type, freq_num, freq_den, "
+                            + "target_type, target_value, unit, position, archived, highlight, "
+                            + "reminder_days, reminder_hour, reminder_min, uuid) "
+                            + "VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
+                 PreparedStatement r = conn.prepareStatement(
+                         "INSERT INTO Repetitions(habit, timestamp, value, notes) VALUES(?,?,?,?)")) {
+                for (int id = 1; id <= habits; id++) {
+                    boolean measurable = rnd.nextInt(4) == 0;
+                    boolean archived = rnd.nextInt(10) == 0;
+                    String name = NAMES[rnd.nextInt(NAMES.length)] + " " + id;
+                    h.setInt(1, id);
+                    h.setString(2, name);
+                    h.setString(3, rnd.nextBoolean() ? "Generated habit " + id : "");
+                    h.setString(4, "Did you " + name.toLowerCase() + " today?");
+                    h.setInt(5, rnd.nextInt(20));
+                    h.setInt(6, measurable ? 1 : 0);
+                    h.setInt(7, 1);
+                    h.setInt(8, measurable ? 7 : 1);
+                    h.setInt(9, measurable ? rnd.nextInt(2) : 0);
+                    h.setDouble(10, measurable ? 5 + rnd.nextInt(50) : 0);
+                    h.setString(11, measurable ? UNITS[rnd.nextInt(UNITS.length)] : "");
+                    h.setInt(12, id * POSITION_GAP);
+                    h.setInt(13, archived ? 1 : 0);
+                    h.setInt(14, 0);
+                    h.setInt(15, 127);
+                    h.setNull(16, Types.INTEGER);
+                    h.setNull(17, Types.INTEGER);
+                    h.setString(18, new UUID(rnd.nextLong(), rnd.nextLong()).toString().replace("-", ""));
+                    h.executeUpdate();
+
+                    // Each habit has its own start day and completion rate, like real users
+                    long start = firstDay + rnd.nextInt(365 * years) / 2 * MS_PER_DAY;
+                    double rate = 0.3 + rnd.nextDouble() * 0.6;
+                    for (long day = start; day <= lastDay; day += MS_PER_DAY) {
+                        if (rnd.nextDouble() >= rate) continue;
+                        r.setInt(1, id);
+                        r.setLong(2, day);
+                        // Loop convention: 2 = checked for yes/no habits, thousandths of the unit otherwise
+                        r.setLong(3, measurable ? (1 + rnd.nextInt(10)) * 1000L : 2);
+                        if (rnd.nextInt(50) == 0) {
+                            r.setString(4, NOTES[rnd.nextInt(NOTES.length)]);
+                            notes++;
+                        } else {
+                            r.setNull(4, Types.VARCHAR);
+                        }
+                        r.addBatch();
+                        if (++repetitions % 10_000 == 0) r.executeBatch();
+                    }
+                }
+                r.executeBatch();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            try (Statement st = conn.createStatement()) {
+                st.execute("ANALYZE");
+            }
+        }
+        return new Stats(habits, repetitions, notes, firstDay, lastDay);
+    }
+
+    private static void createSchema(Path db) {
+        ConfigurableApplicationContext ctx = SpringApplication.run(HabitsApplication.class,
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:sqlite:" + db,
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--habits.archive.enabled=false",
+                "--habits.backup.enabled=false");
+        ctx.close();
+    }
+}
@@ -0,0 +1,187 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.service.Days;
+import com.maksym.habits.service.SlowQueryLog;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepetitionArchiveTest {
+
+    private static final long JUN_2023 = day(2023, 6, 1);
+    private static final long JUL_2023 = day(2023, 7, 1);
+    private static final long JUN_2024 = day(2024, 6, 1);
+    private static final long FROM = Days.yearStart(2020);
+    private static final long TO = Days.yearStart(2030);
+
+    @TempDir
+    Path dir;
+
+    private HikariDataSource dataSource;
+    private RepetitionArchiveStore store;
+    private RepetitionJdbcRepository repetitions;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + dir.resolve("habits.db"));
+        config.setMaximumPoolSize(2);
+        config.setConnectionInitSql("PRAGMA busy_timeout=10000");
+        dataSource = new HikariDataSource(config);
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Repetitions (id INTEGER PRIMARY KEY, habit INTEGER NOT NULL, "
+                    + "timestamp INTEGER NOT NULL, value INTEGER NOT NULL, notes TEXT)");
+            st.execute("CREATE UNIQUE INDEX idx_repetitions_habit_timestamp ON Repetitions(habit, timestamp)");
+        }
+        store = new RepetitionArchiveStore(dir.resolve("archive").toString(), true);
+        repetitions = new RepetitionJdbcRepository(dataSource, new StatementCache(new SlowQueryLog(false, 0, 1)), store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void moveTakesRowsOutOfTheLiveTableAndReadsStillSeeThem() throws Exception {
+        repetitions.upsert(1, JUN_2023, 2000L, "old");
+        repetitions.upsert(1, JUL_2023, 3000L, null);
+        repetitions.upsert(1, JUN_2024, 4000L, null);
+        List<Map<String, Object>> before = repetitions.list(FROM, TO);
+
+        assertThat(moveYear(2023)).isEqualTo(2);
+
+        assertThat(store.archivedYears()).containsExactly(2023);
+        assertThat(Files.exists(store.fileFor(2023))).isTrue();
+        assertThat(liveTimestamps()).containsExactly(JUN_2024);
+        assertThat(repetitions.list(FROM, TO)).isEqualTo(before);
+        assertThat(repetitions.valueOn(1, JUN_2023)).isEqualTo(2000);
+        assertThat(repetitions.dailyValues(1, JUN_2023, JUN_2024 + Days.MS_PER_DAY))
+                .containsExactly(Map.entry(JUN_2023, 2000L), Map.entry(JUL_2023, 3000L), Map.entry(JUN_2024, 4000L));
+    }
+
+    @Test
+    void emptyYearCreatesNoFile() throws Exception {
+        repetitions.upsert(1, JUN_2024, 1000L, null);
+
+        assertThat(moveYear(2023)).isZero();
+
+        assertThat(store.archivedYears()).isEmpty();
+        assertThat(Files.exists(store.fileFor(2023))).isFalse();
+    }
+
+    @Test
+    void liveRowTakesPrecedenceOverTheArchivedOne() throws Exception {
+        repetitions.upsert(1, JUN_2023, 2000L, "archived");
+        moveYear(2023);
+
+        repetitions.upsert(1, JUN_2023, 5000L, "rewritten");
+
+        List<Map<String, Object>> rows = repetitions.list(FROM, TO);
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)).containsEntry("value", 5000L).containsEntry("notes", "rewritten");
+        assertThat(repetitions.valueOn(1, JUN_2023)).isEqualTo(5000);
+    }
+
+    @Test
+    void deleteReachesTheArchivedDay() throws Exception {
+        repetitions.upsert(1, JUN_2023, 2000L, null);
+        repetitions.upsert(1, JUL_2023, 3000L, null);
+        moveYear(2023);
+
+        repetitions.delete(1, JUN_2023);
+
+        assertThat(repetitions.list(FROM, TO)).extracting(r -> r.get("timestamp")).containsExactly(JUL_2023);
+        assertThat(repetitions.valueOn(1, JUN_2023)).isZero();
+        assertThat(count(store.fileFor(2023))).isEqualTo(1);
+    }
+
+    @Test
+    void exportSnapshotGetsArchivedRowsBackWithLiveRowsWinning() throws Exception {
+        repetitions.upsert(1, JUN_2023, 2000L, null);
+        repetitions.upsert(2, JUL_2023, 3000L, null);
+        repetitions.upsert(1, JUN_2024, 4000L, null);
+        moveYear(2023);
+        repetitions.upsert(1, JUN_2023, 7000L, null);
+
+        Path snapshot = dir.resolve("export.db");
+        Files.copy(dir.resolve("habits.db"), snapshot);
+        repetitions.mergeArchivesInto(snapshot);
+
+        assertThat(count(snapshot)).isEqualTo(3);
+        try (Connection conn = RepetitionArchiveStore.openFile(snapshot);
+             PreparedStatement ps = conn.prepareStatement("SELECT value FROM Repetitions WHERE habit=1 AND timestamp=?")) {
+            ps.setLong(1, JUN_2023);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getLong(1)).isEqualTo(7000);
+            }
+        }
+    }
+
+    @Test
+    void rowsStoredInSecondsStayLive() throws Exception {
+        long seconds = JUN_2023 / 1000;
+        repetitions.upsert(1, seconds, 2000L, null);
+        repetitions.upsert(2, JUN_2023, 3000L, null);
+
+        assertThat(repetitions.oldestBefore(JUN_2024)).isEqualTo(JUN_2023);
+        assertThat(moveYear(1970)).isZero();
+        assertThat(moveYear(2023)).isEqualTo(1);
+
+        assertThat(liveTimestamps()).containsExactly(seconds);
+        assertThat(repetitions.valueOn(1, JUN_2023)).isEqualTo(2000);
+    }
+
+    @Test
+    void disabledStoreWithoutYearFilesIsInactive() {
+        RepetitionArchiveStore disabled = new RepetitionArchiveStore(dir.resolve("none").toString(), false);
+
+        assertThat(disabled.isActive()).isFalse();
+        assertThat(store.isActive()).isTrue();
+    }
+
+    // ============================== Helpers ==============================
+
+    private static long day(int year, int month, int dayOfMonth) {
+        return LocalDate.of(year, month, dayOfMonth).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private int moveYear(int year) throws Exception {
+        Files.createDirectories(store.dir());
+        return repetitions.moveToArchive(year, Days.yearStart(year), Days.yearStart(year + 1));
+    }
+
+    private List<Long> liveTimestamps() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT timestamp FROM Repetitions ORDER BY timestamp")) {
+            List<Long> out = new ArrayList<>();
+            while (rs.next()) out.add(rs.getLong(1));
+            return out;
+        }
+    }
+
+    private static long count(Path file) throws SQLException {
+        try (Connection conn = RepetitionArchiveStore.openFile(file);
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM Repetitions")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
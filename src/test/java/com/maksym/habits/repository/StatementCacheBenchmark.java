@@ -0,0 +1,151 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.config.SlowQueryConfig;
+import com.maksym.habits.service.Days;
+import com.maksym.habits.service.SlowQueryLog;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Map;
+
+/**
+ * Measures the two changes to the per-request statement pattern separately, each request taking
+ * a connection from the same Hikari pool and timing proxy the application runs with:
+ * <ol>
+ *   <li>{@code PRAGMA busy_timeout} per request vs. once per pooled connection ({@code connection-init-sql})</li>
+ *   <li>prepare + finalize per request vs. {@link StatementCache}</li>
+ * </ol>
+ * Not a unit test; run the main method:
+ *
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.maksym.habits.repository.StatementCacheBenchmark [-Dexec.args=200000]
+ */
+public class StatementCacheBenchmark {
+
+    private static final String UPSERT =
+            "INSERT INTO Repetitions(habit, timestamp, value, notes) VALUES(?,?,?,?) " +
+                    "ON CONFLICT(habit, timestamp) DO UPDATE SET value=excluded.value, notes=excluded.notes";
+    private static final String LIST_HABITS =
+            "SELECT id, name, description, question, color, type, position, archived FROM Habits "
+                    + "WHERE COALESCE(archived, 0) = 0 ORDER BY position ASC, id ASC";
+
+    private interface Request {
+        void run(DataSource ds, int i) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path db = Files.createTempFile("stmt_bench_", ".db");
+        // Threshold out of reach: every execute goes through the proxy, none gets EXPLAINed
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, 60_000, 1);
+        try (HikariDataSource pool = pool(db)) {
+            DataSource ds = timed(pool, slowQueryLog);
+            try (Connection conn = ds.getConnection()) {
+                setUp(conn);
+            }
+            StatementCache cache = new StatementCache(slowQueryLog);
+
+            Request pragmaAndPrepare = (d, i) -> {
+                try (Connection conn = d.getConnection()) {
+                    try (Statement s = conn.createStatement()) { s.execute("PRAGMA busy_timeout=10000"); }
+                    prepared(conn, i);
+                }
+            };
+            Request prepare = (d, i) -> {
+                try (Connection conn = d.getConnection()) {
+                    prepared(conn, i);
+                }
+            };
+            Request cached = (d, i) -> {
+                try (Connection conn = d.getConnection()) {
+                    cached(conn, cache, i);
+                }
+            };
+
+            // Warm up every path before measuring
+            for (Request r : new Request[]{pragmaAndPrepare, prepare, cached}) measure(ds, r, iterations / 10);
+
+            double a = measure(ds, pragmaAndPrepare, iterations);
+            double b = measure(ds, prepare, iterations);
+            double c = measure(ds, cached, iterations);
+            System.out.printf("iterations                      %d (1 upsert + 1 habit list each, pooled connection)%n", iterations);
+            System.out.printf("PRAGMA + prepare per request    %.2f us/iteration%n", a);
+            System.out.printf("prepare per request             %.2f us/iteration%n", b);
+            System.out.printf("statement cache                 %.2f us/iteration%n", c);
+            System.out.printf("PRAGMA removal saved            %.2f us/iteration (%.0f%%)%n", a - b, 100.0 * (a - b) / a);
+            System.out.printf("statement cache saved           %.2f us/iteration (%.0f%%)%n", b - c, 100.0 * (b - c) / b);
+        } finally {
+            Files.deleteIfExists(db);
+        }
+    }
+
+    // Same pool settings as application.properties; fsync off so the numbers show statement
+    // overhead, not disk latency
+    private static HikariDataSource pool(Path db) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + db);
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setConnectionInitSql("PRAGMA busy_timeout=10000");
+        config.addDataSourceProperty("synchronous", "OFF");
+        config.addDataSourceProperty("journal_mode", "MEMORY");
+        return new HikariDataSource(config);
+    }
+
+    // The application's own wrapping, so the proxy overhead is part of every measurement
+    private static DataSource timed(DataSource pool, SlowQueryLog slowQueryLog) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("slowQueryLog", slowQueryLog));
+        return (DataSource) SlowQueryConfig.slowQueryDataSourceWrapper(beans.getBeanProvider(SlowQueryLog.class))
+                .postProcessAfterInitialization(pool, "dataSource");
+    }
+
+    private static double measure(DataSource ds, Request request, int n) throws SQLException {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) request.run(ds, i);
+        return (System.nanoTime() - t0) / 1e3 / n;
+    }
+
+    private static void setUp(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Habits (id INTEGER PRIMARY KEY, name TEXT, description TEXT, question TEXT, "
+                    + "color INTEGER, type INTEGER, position INTEGER, archived INTEGER)");
+            st.execute("CREATE TABLE Repetitions (id INTEGER PRIMARY KEY, habit INTEGER NOT NULL, "
+                    + "timestamp INTEGER NOT NULL, value INTEGER NOT NULL, notes TEXT)");
+            st.execute("CREATE UNIQUE INDEX idx_repetitions_habit_timestamp ON Repetitions(habit, timestamp)");
+            for (int i = 0; i < 20; i++) {
+                st.execute("INSERT INTO Habits(name, position, archived) VALUES('habit " + i + "', " + i + ", 0)");
+            }
+        }
+    }
+
+    private static void prepared(Connection conn, int i) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT)) {
+            bindUpsert(ps, i);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(LIST_HABITS); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) rs.getLong(1);
+        }
+    }
+
+    private static void cached(Connection conn, StatementCache cache, int i) throws SQLException {
+        try (PreparedStatement ps = cache.prepare(conn, UPSERT)) {
+            bindUpsert(ps, i);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = cache.prepare(conn, LIST_HABITS); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) rs.getLong(1);
+        }
+    }
+
+    private static void bindUpsert(PreparedStatement ps, int i) throws SQLException {
+        ps.setLong(1, i % 20 + 1);
+        ps.setLong(2, (i % 365) * Days.MS_PER_DAY);
+        ps.setLong(3, i % 3);
+        ps.setNull(4, Types.VARCHAR);
+    }
+}
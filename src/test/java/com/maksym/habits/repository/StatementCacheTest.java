@@ -0,0 +1,55 @@
+package com.maksym.habits.repository;
+
+import com.maksym.habits.service.SlowQueryLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final StatementCache cache = new StatementCache(new SlowQueryLog(false, 0, 1));
+
+    @Test
+    void statementIsReusedOnTheSameConnection() throws SQLException {
+        try (Connection conn = open()) {
+            assertThat(selectOne(conn)).isEqualTo(1);
+            assertThat(selectOne(conn)).isEqualTo(1);
+            assertThat(cache.connections()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void closedConnectionsAreDroppedWhenANewOneArrives() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            try (Connection conn = open()) {
+                selectOne(conn);
+            }
+        }
+        // Only the last, now closed, connection is still held until the next one shows up
+        assertThat(cache.connections()).isEqualTo(1);
+
+        try (Connection live = open(); Connection other = open()) {
+            selectOne(live);
+            selectOne(other);
+            assertThat(cache.connections()).isEqualTo(2);
+        }
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("cache.db"));
+    }
+
+    private int selectOne(Connection conn) throws SQLException {
+        try (PreparedStatement ps = cache.prepare(conn, "SELECT 1"); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.maksym.habits.service;
+
+import org.junit.jupiter.api.Test;
+
+import static com.maksym.habits.service.Days.MS_PER_DAY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DaysTest {
+
+    // 2024-03-01T00:00:00Z
+    private static final long MARCH_1_2024 = 1_709_251_200_000L;
+
+    @Test
+    void toMsConvertsSecondsOnly() {
+        assertThat(Days.toMs(MARCH_1_2024 / 1000)).isEqualTo(MARCH_1_2024);
+        assertThat(Days.toMs(MARCH_1_2024)).isEqualTo(MARCH_1_2024);
+        assertThat(Days.toMs(99_999_999_999L)).isEqualTo(99_999_999_999_000L);
+        assertThat(Days.toMs(100_000_000_000L)).isEqualTo(100_000_000_000L);
+    }
+
+    @Test
+    void toUtcMidnightFloorsToTheDay() {
+        assertThat(Days.toUtcMidnight(MARCH_1_2024)).isEqualTo(MARCH_1_2024);
+        assertThat(Days.toUtcMidnight(MARCH_1_2024 + MS_PER_DAY - 1)).isEqualTo(MARCH_1_2024);
+        // Before the epoch it still rounds down, not toward zero
+        assertThat(Days.toUtcMidnight(-1)).isEqualTo(-MS_PER_DAY);
+    }
+
+    @Test
+    void dayOfAcceptsSecondsAndMillis() {
+        assertThat(Days.dayOf(MARCH_1_2024 / 1000 + 3600)).isEqualTo(MARCH_1_2024);
+        assertThat(Days.dayOf(MARCH_1_2024 + 3_600_000)).isEqualTo(MARCH_1_2024);
+    }
+
+    @Test
+    void yearBoundaries() {
+        long start = Days.yearStart(2024);
+        assertThat(Days.yearOf(start)).isEqualTo(2024);
+        assertThat(Days.yearOf(start - 1)).isEqualTo(2023);
+        assertThat(Days.yearOf(MARCH_1_2024)).isEqualTo(2024);
+        assertThat(Days.yearStart(2025) - start).isEqualTo(366 * MS_PER_DAY);
+    }
+}
@@ -0,0 +1,246 @@
+package com.maksym.habits.service;
+
+import com.maksym.habits.repository.HabitJdbcRepository;
+import com.maksym.habits.repository.StatementCache;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.maksym.habits.service.HabitOrderingService.GAP;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HabitOrderingServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private HikariDataSource dataSource;
+    private DataVersion dataVersion;
+    private HabitOrderingService ordering;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + dir.resolve("habits.db"));
+        config.setMaximumPoolSize(8);
+        config.setConnectionInitSql("PRAGMA busy_timeout=10000");
+        dataSource = new HikariDataSource(config);
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Habits (id INTEGER PRIMARY KEY, name TEXT, position INTEGER)");
+        }
+        StatementCache statements = new StatementCache(new SlowQueryLog(false, 0, 1));
+        dataVersion = new DataVersion();
+        ordering = new HabitOrderingService(new HabitJdbcRepository(dataSource, statements), dataVersion);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void moveBetweenSparseNeighboursWritesOnlyTheMidpoint() throws SQLException {
+        insert("A", 0, "B", GAP, "C", 2 * GAP);
+
+        Map<String, Object> out = ordering.move(3, 1L, 2L);
+
+        assertThat(out).containsEntry("position", GAP / 2).containsEntry("rebalanced", false);
+        assertThat(order()).containsExactly("A", "C", "B");
+        assertThat(positions()).containsExactly(0, GAP / 2, GAP);
+        assertThat(dataVersion.current()).isEqualTo(1);
+    }
+
+    @Test
+    void oneAnchorFindsTheOtherNeighbour() throws SQLException {
+        insert("A", 0, "B", GAP, "C", 2 * GAP);
+
+        ordering.move(3, 1L, null);
+        assertThat(order()).containsExactly("A", "C", "B");
+
+        ordering.move(1, null, 2L);
+        assertThat(order()).containsExactly("C", "A", "B");
+    }
+
+    @Test
+    void moveToFirstAndLast() throws SQLException {
+        insert("A", 0, "B", GAP, "C", 2 * GAP);
+
+        Map<String, Object> top = ordering.move(3, null, 1L);
+        assertThat(top).containsEntry("position", -GAP);
+        assertThat(order()).containsExactly("C", "A", "B");
+
+        Map<String, Object> bottom = ordering.move(3, 2L, null);
+        assertThat(bottom).containsEntry("position", 2 * GAP);
+        assertThat(order()).containsExactly("A", "B", "C");
+    }
+
+    @Test
+    void legacyContiguousKeysAreRenumberedInline() throws SQLException {
+        insert("A", 0, "B", 1, "C", 2, "D", 3);
+
+        Map<String, Object> out = ordering.move(4, 1L, 2L);
+
+        assertThat(out).containsEntry("position", GAP).containsEntry("rebalanced", true);
+        assertThat(order()).containsExactly("A", "D", "B", "C");
+        assertThat(positions()).containsExactly(0, GAP, 2 * GAP, 3 * GAP);
+    }
+
+    @Test
+    void legacyRowsWithoutPositionGetKeysFirst() throws SQLException {
+        insert("A", null, "B", null, "C", null);
+
+        ordering.move(1, 3L, null);
+
+        assertThat(order()).containsExactly("B", "C", "A");
+        assertThat(positions()).doesNotContainNull();
+    }
+
+    @Test
+    void tiedAnchorKeyRenumbersInsteadOfSkippingTheTie() throws SQLException {
+        insert("A", GAP, "B", GAP, "C", 2 * GAP, "X", 4 * GAP);
+
+        Map<String, Object> after = ordering.move(4, 1L, null);
+        assertThat(after).containsEntry("rebalanced", true);
+        assertThat(order()).containsExactly("A", "X", "B", "C");
+
+        setPosition(1, 4 * GAP);
+        setPosition(2, 0);
+        setPosition(3, 0); // B and C now tie at the top, ordered B, C by id; then X, A
+        Map<String, Object> before = ordering.move(4, null, 3L);
+        assertThat(before).containsEntry("rebalanced", true);
+        assertThat(order()).containsExactly("B", "X", "C", "A");
+    }
+
+    @Test
+    void tightGapIsRebalancedInTheBackground() throws Exception {
+        insert("A", 0, "B", 10, "C", 2 * GAP);
+
+        Map<String, Object> out = ordering.move(3, 1L, 2L);
+        assertThat(out).containsEntry("position", 5).containsEntry("rebalanced", false);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!positions().equals(List.of(0, GAP, 2 * GAP)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(positions()).containsExactly(0, GAP, 2 * GAP);
+        assertThat(order()).containsExactly("A", "C", "B");
+    }
+
+    @Test
+    void rebalanceTouchesOnlyRowsThatChange() throws SQLException {
+        insert("A", 0, "B", 3, "C", 2 * GAP);
+
+        assertThat(ordering.rebalance()).isEqualTo(1);
+        assertThat(ordering.rebalance()).isZero();
+        assertThat(positions()).containsExactly(0, GAP, 2 * GAP);
+    }
+
+    @Test
+    void unknownHabitOrNeighbourReturnsNull() throws SQLException {
+        insert("A", 0, "B", GAP);
+
+        assertThat(ordering.move(99, 1L, null)).isNull();
+        assertThat(ordering.move(1, 99L, null)).isNull();
+        assertThat(ordering.move(1, null, 99L)).isNull();
+        assertThat(dataVersion.current()).isZero();
+    }
+
+    @Test
+    void invalidNeighboursAreRejected() throws SQLException {
+        insert("A", 0, "B", GAP);
+
+        assertThatThrownBy(() -> ordering.move(1, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ordering.move(1, 1L, null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentMovesAndRebalancesDontFailWithBusy() throws Exception {
+        insert("A", 0, "B", 1, "C", 2, "D", 3, "E", 4, "F", 5, "G", 6, "H", 7);
+        int threads = 8;
+        int movesPerThread = 30;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            results.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < movesPerThread; i++) {
+                    long id = 1 + random.nextInt(8);
+                    long anchor = 1 + (id + random.nextInt(7)) % 8;
+                    if (random.nextBoolean()) ordering.move(id, anchor, null);
+                    else ordering.move(id, null, anchor);
+                    if (i % 10 == 0) ordering.rebalance();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> result : results) result.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(order()).containsExactlyInAnyOrder("A", "B", "C", "D", "E", "F", "G", "H");
+        assertThat(new HashSet<>(positions())).hasSize(8);
+    }
+
+    // ============================== Helpers ==============================
+
+    // name, position pairs; ids are assigned 1, 2, 3... in argument order
+    private void insert(Object... namePositionPairs) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO Habits(name, position) VALUES(?, ?)")) {
+            for (int i = 0; i < namePositionPairs.length; i += 2) {
+                ps.setString(1, (String) namePositionPairs[i]);
+                ps.setObject(2, namePositionPairs[i + 1]);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private void setPosition(long id, int position) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE Habits SET position=? WHERE id=?")) {
+            ps.setInt(1, position);
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    private List<String> order() throws SQLException {
+        List<String> names = new ArrayList<>();
+        for (Object[] row : rows()) names.add((String) row[0]);
+        return names;
+    }
+
+    private List<Integer> positions() throws SQLException {
+        List<Integer> out = new ArrayList<>();
+        for (Object[] row : rows()) out.add((Integer) row[1]);
+        return out;
+    }
+
+    private List<Object[]> rows() throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name, position FROM Habits ORDER BY position ASC, id ASC")) {
+            while (rs.next()) {
+                int p = rs.getInt(2);
+                rows.add(new Object[]{rs.getString(1), rs.wasNull() ? null : p});
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,103 @@
+package com.maksym.habits.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HabitTargetIndexTest {
+
+    private static long day(long n) {
+        return n * Days.MS_PER_DAY;
+    }
+
+    // Index days [from, from + days) over the given day/value pairs
+    private static HabitTargetIndex index(int from, int days, long... dayValuePairs) {
+        TreeMap<Long, Long> values = new TreeMap<>();
+        for (int i = 0; i < dayValuePairs.length; i += 2) values.put(day(dayValuePairs[i]), dayValuePairs[i + 1]);
+        return new HabitTargetIndex(day(from), days, values);
+    }
+
+    @Test
+    void windowSumAddsTheTrailingDays() {
+        HabitTargetIndex index = index(10, 10, 10, 1, 11, 2, 13, 4);
+
+        assertThat(index.windowSum(day(13), 1)).isEqualTo(4);
+        assertThat(index.windowSum(day(13), 3)).isEqualTo(6);
+        assertThat(index.windowSum(day(13), 4)).isEqualTo(7);
+    }
+
+    @Test
+    void windowSumClampsToTheSpan() {
+        HabitTargetIndex index = index(10, 5, 10, 1, 11, 2);
+
+        // Window reaching before the span counts only covered days
+        assertThat(index.windowSum(day(11), 30)).isEqualTo(3);
+        // Entirely before the span
+        assertThat(index.windowSum(day(9), 5)).isZero();
+        // A window of 0 or less still covers the day itself
+        assertThat(index.windowSum(day(10), 0)).isEqualTo(1);
+    }
+
+    @Test
+    void windowSumPastTheEndSeesOnlyDaysInsideTheWindow() {
+        HabitTargetIndex index = index(10, 5, 10, 1, 11, 2);
+
+        assertThat(index.windowSum(day(12), 2)).isEqualTo(2);
+        assertThat(index.windowSum(day(20), 10)).isEqualTo(2);
+        assertThat(index.windowSum(day(20), 11)).isEqualTo(3);
+        assertThat(index.windowSum(day(100), 7)).isZero();
+    }
+
+    @Test
+    void valuesOutsideTheSpanAreDropped() {
+        HabitTargetIndex index = index(10, 3, 5, 100, 10, 1, 12, 2, 13, 100, 1_000_000_000, 7);
+
+        assertThat(index.windowSum(day(12), 3)).isEqualTo(3);
+        assertThat(index.windowSum(day(50), 1000)).isEqualTo(3);
+    }
+
+    @Test
+    void setOutsideTheSpanIsIgnored() {
+        HabitTargetIndex index = index(10, 3, 10, 5);
+
+        index.set(day(5), 3);
+        index.set(day(13), 3);
+        // A far-off day must not size anything
+        index.set(Long.MAX_VALUE - Days.MS_PER_DAY, 9);
+
+        assertThat(index.windowSum(day(12), 3)).isEqualTo(5);
+        assertThat(index.end()).isEqualTo(day(13));
+    }
+
+    @Test
+    void setReplacesTheDaysValue() {
+        HabitTargetIndex index = index(10, 5, 10, 5, 11, 1);
+
+        index.set(day(10), 2);
+
+        assertThat(index.windowSum(day(10), 1)).isEqualTo(2);
+        assertThat(index.windowSum(day(11), 2)).isEqualTo(3);
+    }
+
+    @Test
+    void setToZeroClearsTheDay() {
+        HabitTargetIndex index = index(10, 5, 10, 5, 11, 1);
+
+        index.set(day(10), 0);
+
+        assertThat(index.windowSum(day(11), 2)).isEqualTo(1);
+    }
+
+    @Test
+    void coversChecksTheSpan() {
+        HabitTargetIndex index = index(10, 5);
+
+        assertThat(index.covers(day(10), day(15))).isTrue();
+        assertThat(index.covers(day(11), day(12))).isTrue();
+        assertThat(index.covers(day(9), day(12))).isFalse();
+        assertThat(index.covers(day(11), day(16))).isFalse();
+        assertThat(index.windowSum(day(12), 7)).isZero();
+    }
+}
@@ -0,0 +1,94 @@
+package com.maksym.habits.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseEncoderTest {
+
+    private final ResponseEncoder encoder = new ResponseEncoder(new ObjectMapper(), DataSize.ofBytes(64));
+
+    @Test
+    void negotiateDefaultsToJson() {
+        assertThat(encoder.negotiate(null)).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(encoder.negotiate("")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(encoder.negotiate("*/*")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(encoder.negotiate("application/*")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(encoder.negotiate("text/html")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(encoder.negotiate("not a media type;;")).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void negotiatePicksAnExplicitType() {
+        assertThat(encoder.negotiate("application/cbor")).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(encoder.negotiate(ResponseEncoder.SMILE_VALUE)).isEqualTo(ResponseEncoder.SMILE);
+        // An exact match beats a wildcard of the same quality
+        assertThat(encoder.negotiate("*/*, application/cbor")).isEqualTo(MediaType.APPLICATION_CBOR);
+    }
+
+    @Test
+    void negotiateHonoursQualityValues() {
+        assertThat(encoder.negotiate("application/json;q=0.5, application/cbor")).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(encoder.negotiate("application/cbor;q=0.9, " + ResponseEncoder.SMILE_VALUE + ";q=0.95"))
+                .isEqualTo(ResponseEncoder.SMILE);
+        // A higher-quality wildcard wins over a lower-quality exact match
+        assertThat(encoder.negotiate("application/cbor;q=0.8, */*;q=0.9")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(encoder.negotiate("application/json;q=0, application/cbor;q=0.1")).isEqualTo(MediaType.APPLICATION_CBOR);
+    }
+
+    @Test
+    void negotiateLetsTheMostSpecificRangeDecide() {
+        // q=0 on JSON itself rules it out even though the wildcard would accept it
+        assertThat(encoder.negotiate("application/json;q=0, */*")).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(encoder.negotiate("application/json;q=0, application/cbor;q=0, */*;q=0.5"))
+                .isEqualTo(ResponseEncoder.SMILE);
+        assertThat(encoder.negotiate("application/*;q=0.2, application/json;q=0.1")).isEqualTo(MediaType.APPLICATION_CBOR);
+    }
+
+    @Test
+    void acceptsGzipReadsAcceptEncoding() {
+        assertThat(ResponseEncoder.acceptsGzip(null)).isFalse();
+        assertThat(ResponseEncoder.acceptsGzip("")).isFalse();
+        assertThat(ResponseEncoder.acceptsGzip("gzip")).isTrue();
+        assertThat(ResponseEncoder.acceptsGzip("deflate, gzip, br")).isTrue();
+        assertThat(ResponseEncoder.acceptsGzip("GZIP; q=0.5")).isTrue();
+        assertThat(ResponseEncoder.acceptsGzip("deflate, br")).isFalse();
+    }
+
+    @Test
+    void acceptsGzipWildcardAndZeroQuality() {
+        assertThat(ResponseEncoder.acceptsGzip("*")).isTrue();
+        assertThat(ResponseEncoder.acceptsGzip("*;q=0")).isFalse();
+        assertThat(ResponseEncoder.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(ResponseEncoder.acceptsGzip("br, gzip;q=0.0")).isFalse();
+        // An explicit gzip;q=0 wins over the wildcard, in either order
+        assertThat(ResponseEncoder.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(ResponseEncoder.acceptsGzip("gzip;q=0, *")).isFalse();
+        assertThat(ResponseEncoder.acceptsGzip("*;q=0, gzip")).isTrue();
+    }
+
+    @Test
+    void encodeCompressesOnlyAboveTheThreshold() throws Exception {
+        assertThat(encoder.encode(List.of(1), MediaType.APPLICATION_JSON).gzip()).isNull();
+        assertThat(encoder.encode("x".repeat(200), MediaType.APPLICATION_JSON).gzip()).isNotNull();
+    }
+
+    @Test
+    void cachedReloadsOnlyForANewVersion() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        ResponseEncoder.Encoded a = encoder.cached("k", MediaType.APPLICATION_JSON, 1, loads::incrementAndGet);
+        ResponseEncoder.Encoded b = encoder.cached("k", MediaType.APPLICATION_JSON, 1, loads::incrementAndGet);
+        encoder.cached("k", MediaType.APPLICATION_CBOR, 1, loads::incrementAndGet);
+        encoder.cached("k", MediaType.APPLICATION_JSON, 2, loads::incrementAndGet);
+
+        assertThat(b).isSameAs(a);
+        assertThat(loads).hasValue(3);
+    }
+}
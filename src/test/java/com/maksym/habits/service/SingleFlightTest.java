@@ -0,0 +1,93 @@
+package com.maksym.habits.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "value";
+        };
+
+        Future<String> first = pool.submit(() -> flight.run("k", loader));
+        started.await();
+        List<Future<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) waiters.add(pool.submit(() -> flight.run("k", loader)));
+        Thread.sleep(50); // let the waiters reach the pending call
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        for (Future<String> w : waiters) assertThat(w.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void waitersGetTheLoadersException() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> failing = () -> {
+            started.countDown();
+            release.await();
+            throw new IOException("boom");
+        };
+
+        Future<String> first = pool.submit(() -> flight.run("k", failing));
+        started.await();
+        Future<String> waiter = pool.submit(() -> flight.run("k", failing));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IOException.class)
+                .hasRootCauseMessage("boom");
+    }
+
+    @Test
+    void keyIsReleasedAfterCompletion() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(flight.run("k", () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(flight.run("k", () -> "v" + loads.incrementAndGet())).isEqualTo("v2");
+
+        assertThatThrownBy(() -> flight.run("k", () -> { throw new IllegalStateException("fail"); }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(flight.run("k", () -> "after failure")).isEqualTo("after failure");
+    }
+
+    @Test
+    void differentKeysDoNotWaitForEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> slow = pool.submit(() -> flight.run("a", () -> { release.await(); return "a"; }));
+
+        assertThat(flight.run("b", () -> "b")).isEqualTo("b");
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+    }
+}
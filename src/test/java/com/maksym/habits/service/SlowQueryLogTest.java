@@ -0,0 +1,83 @@
+package com.maksym.habits.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    private static final String ALIAS_A = "arch_0123456789abcdef0123456789abcdef";
+    private static final String ALIAS_B = "arch_fedcba9876543210fedcba9876543210";
+
+    @Test
+    void shapeReplacesLiterals() {
+        assertThat(SlowQueryLog.shape("SELECT * FROM Habits WHERE id = 5 AND name = 'it''s'"))
+                .isEqualTo("SELECT * FROM Habits WHERE id = ? AND name = ?");
+        assertThat(SlowQueryLog.shape("UPDATE Repetitions SET value = -3 WHERE value > 1.5"))
+                .isEqualTo("UPDATE Repetitions SET value = ? WHERE value > ?");
+    }
+
+    @Test
+    void shapeKeepsIdentifiersWithDigits() {
+        assertThat(SlowQueryLog.shape("SELECT col1, t2.x FROM t2 WHERE a = ?"))
+                .isEqualTo("SELECT col1, t2.x FROM t2 WHERE a = ?");
+    }
+
+    @Test
+    void shapeCollapsesPerRequestAliases() {
+        String a = SlowQueryLog.shape("SELECT habit FROM " + ALIAS_A + ".Repetitions a");
+        String b = SlowQueryLog.shape("SELECT habit FROM " + ALIAS_B + ".Repetitions a");
+
+        assertThat(a).isEqualTo("SELECT habit FROM arch_*.Repetitions a").isEqualTo(b);
+        assertThat(SlowQueryLog.shape("ATTACH DATABASE '/tmp/loop_upload_1.db' AS src_" + ALIAS_A.substring(5)))
+                .isEqualTo("ATTACH DATABASE ? AS src_*");
+    }
+
+    @Test
+    void shapeCollapsesWhitespace() {
+        assertThat(SlowQueryLog.shape("  SELECT id\n  FROM Habits\t\tORDER BY position  "))
+                .isEqualTo("SELECT id FROM Habits ORDER BY position");
+    }
+
+    @Test
+    void recordKeepsOnlySlowStatementsUpToCapacity() {
+        SlowQueryLog log = new SlowQueryLog(true, 10, 2);
+
+        log.record("SELECT 1", 1_000_000L, 0, 0, null);
+        log.record("SELECT 2", 20_000_000L, 0, 0, null);
+        log.record("SELECT 3", 30_000_000L, 1, 0, null);
+        log.record("SELECT 4", 40_000_000L, 2, 5, null);
+
+        Map<String, Object> snapshot = log.snapshot();
+        assertThat(snapshot).containsEntry("statementsTimed", 4L).containsEntry("slowStatements", 3L);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> entries = (List<Map<String, Object>>) snapshot.get("entries");
+        // Newest first, oldest slow entry dropped
+        assertThat(entries).extracting(e -> e.get("ms")).containsExactly(40.0, 30.0);
+        assertThat(entries.get(0)).containsEntry("sql", "SELECT ?").containsEntry("binds", 2).containsEntry("batch", 5);
+        assertThat(entries.get(1)).doesNotContainKey("batch");
+    }
+
+    @Test
+    void recordCapturesTheQueryPlan() throws Exception {
+        SlowQueryLog log = new SlowQueryLog(true, 0, 10);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Habits (id INTEGER PRIMARY KEY, position INTEGER)");
+
+            log.record("SELECT id FROM Habits WHERE id = ?", 1, 1, 0, conn);
+            log.record("PRAGMA busy_timeout=10000", 1, 0, 0, conn);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> entries = (List<Map<String, Object>>) log.snapshot().get("entries");
+        assertThat((List<?>) entries.get(1).get("plan")).isNotEmpty();
+        assertThat((List<?>) entries.get(0).get("plan")).isEmpty();
+    }
+}